@@ -0,0 +1,33 @@
+package de.codebarista.shopware.appserver.benchmarks;
+
+import de.codebarista.shopware.appserver.ShopwareApp;
+import de.codebarista.shopware.appserver.service.AppLookupService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * Lookup of the app for the host of an incoming request, which runs for every request.
+ */
+@State(Scope.Benchmark)
+public class AppLookupServiceBenchmark {
+    private AppLookupService appLookupService;
+
+    @Setup
+    public void setUp() {
+        appLookupService = new AppLookupService(List.of(BenchmarkFixtures.APP));
+    }
+
+    @Benchmark
+    public ShopwareApp tryGetForHost() {
+        return appLookupService.tryGetForHost(BenchmarkFixtures.HOST);
+    }
+
+    @Benchmark
+    public ShopwareApp tryGetForUnknownHost() {
+        return appLookupService.tryGetForHost("unknown.app-backend.de");
+    }
+}
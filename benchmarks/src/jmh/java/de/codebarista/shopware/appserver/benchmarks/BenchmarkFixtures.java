@@ -0,0 +1,141 @@
+package de.codebarista.shopware.appserver.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.codebarista.shopware.appserver.ShopwareApp;
+import de.codebarista.shopware.appserver.api.dto.action.ActionRequestDto;
+import de.codebarista.shopware.appserver.api.dto.action.ActionResponseDto;
+import de.codebarista.shopware.appserver.api.dto.event.ShopwareEventDto;
+import de.codebarista.shopware.appserver.config.AppServerProperties;
+import de.codebarista.shopware.appserver.model.ShopwareShopEntity;
+import de.codebarista.shopware.appserver.model.ShopwareShopEntityRepository;
+import de.codebarista.shopware.appserver.service.ShopManagementService;
+import jakarta.annotation.Nullable;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Apps, shops and payloads shared by the benchmarks.
+ */
+final class BenchmarkFixtures {
+    static final String APP_KEY = "bench";
+    static final String HOST = APP_KEY + ".app-backend.de";
+    static final String SHOP_ID = "Y5Cy8Ib0Q5OyZ1bm";
+    static final String SHOP_SECRET = "shop-secret-0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMN";
+
+    private BenchmarkFixtures() {
+    }
+
+    static final ShopwareApp APP = new ShopwareApp() {
+        @Override
+        public String getAppKey() {
+            return APP_KEY;
+        }
+
+        @Override
+        public String getAppSecret() {
+            return "app-secret";
+        }
+
+        @Override
+        public String getAppName() {
+            return "BenchmarkApp";
+        }
+
+        @Override
+        public String getVersion() {
+            return "1.0.0";
+        }
+
+        @Override
+        public String getAdminExtensionFolderName() {
+            return APP_KEY;
+        }
+
+        @Override
+        public void onRegisterShop(String shopHost, String shopId, long internalShopId) {
+        }
+
+        @Override
+        public void onReRegisterShop(String shopHost, String shopId, long internalShopId) {
+        }
+
+        @Override
+        public void onDeleteShop(String shopHost, String shopId, long internalShopId) {
+        }
+
+        @Override
+        public void onEvent(ShopwareEventDto event, long internalShopId, @Nullable Locale userLocale,
+                            @Nullable String shopwareLanguageId) {
+        }
+
+        @Override
+        public ActionResponseDto<?> onAction(ActionRequestDto action, long internalShopId, @Nullable Locale userLocale,
+                                             @Nullable String shopwareLanguageId) {
+            return null;
+        }
+    };
+
+    /**
+     * Configured like the object mapper of a Spring Boot application.
+     */
+    static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    /**
+     * A confirmed shop of {@link #APP} with the {@link #SHOP_SECRET}.
+     */
+    static ShopwareShopEntity shop() {
+        var shop = new ShopwareShopEntity(APP_KEY, SHOP_ID);
+        shop.setShopSecret(SHOP_SECRET);
+        shop.setShopHost("myshop.de");
+        shop.setShopRequestUrl("https://myshop.de");
+        return shop;
+    }
+
+    /**
+     * Shop management backed by a repository that only knows {@link #shop()}, so that no database is involved.
+     */
+    static ShopManagementService shopManagementService() {
+        ShopwareShopEntity shop = shop();
+        var repository = (ShopwareShopEntityRepository) Proxy.newProxyInstance(
+                BenchmarkFixtures.class.getClassLoader(),
+                new Class<?>[]{ShopwareShopEntityRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findByAppKeyAndShopId" -> APP_KEY.equals(args[0]) && SHOP_ID.equals(args[1])
+                            ? Optional.of(shop) : Optional.empty();
+                    case "findByAppKeyAndShopHost" -> List.of(shop);
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "BenchmarkShopRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        return new ShopManagementService(repository, new AppServerProperties());
+    }
+
+    /**
+     * A webhook body with the given number of payload entries, roughly 100 bytes each.
+     */
+    static String eventBody(int payloadEntries) {
+        var body = new StringBuilder(256 + payloadEntries * 100);
+        body.append("{\"data\":{\"payload\":[");
+        for (int i = 0; i < payloadEntries; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append("{\"entity\":\"product\",\"operation\":\"update\",\"primaryKey\":\"")
+                    .append(String.format("%032x", i))
+                    .append("\",\"updatedFields\":[\"stock\"]}");
+        }
+        body.append("],\"event\":\"product.written\"},")
+                .append("\"source\":{\"url\":\"https://myshop.de\",\"appVersion\":\"1.0.0\",")
+                .append("\"shopId\":\"").append(SHOP_ID).append("\",")
+                .append("\"eventId\":\"a7cb0fb1e8e44e7b9e2c6f3e0b7c1d2e\"},")
+                .append("\"timestamp\":\"2023-12-20T16:10:42+00:00\"}");
+        return body.toString();
+    }
+}
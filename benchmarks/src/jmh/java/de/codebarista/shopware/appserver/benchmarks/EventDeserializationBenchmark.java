@@ -0,0 +1,35 @@
+package de.codebarista.shopware.appserver.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import de.codebarista.shopware.appserver.api.dto.event.ShopwareEventDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Deserialization of webhook bodies of several sizes into {@link ShopwareEventDto}.
+ */
+@State(Scope.Benchmark)
+public class EventDeserializationBenchmark {
+    @Param({"1", "10", "1000"})
+    public int payloadEntries;
+
+    private ObjectReader reader;
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        reader = BenchmarkFixtures.objectMapper().readerFor(ShopwareEventDto.class);
+        body = BenchmarkFixtures.eventBody(payloadEntries).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public ShopwareEventDto deserialize() throws IOException {
+        return reader.readValue(body);
+    }
+}
@@ -0,0 +1,47 @@
+package de.codebarista.shopware.appserver.benchmarks;
+
+import de.codebarista.shopware.appserver.service.SignatureService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Signature calculation and verification of request bodies of several sizes.
+ */
+@State(Scope.Benchmark)
+public class SignatureServiceBenchmark {
+    @Param({"1", "10", "1000"})
+    public int payloadEntries;
+
+    private SignatureService signatureService;
+    private String body;
+    private byte[] bodyBytes;
+    private String signature;
+
+    @Setup
+    public void setUp() {
+        signatureService = new SignatureService(BenchmarkFixtures.objectMapper());
+        body = BenchmarkFixtures.eventBody(payloadEntries);
+        bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+        signature = signatureService.calculateSignature(body, BenchmarkFixtures.SHOP_SECRET);
+    }
+
+    @Benchmark
+    public boolean verifySignature() {
+        return signatureService.verifySignature(bodyBytes, BenchmarkFixtures.SHOP_SECRET, signature);
+    }
+
+    @Benchmark
+    public String calculateSignature() {
+        return signatureService.calculateSignature(body, BenchmarkFixtures.SHOP_SECRET);
+    }
+
+    @Benchmark
+    public String hash() {
+        return signatureService.hash(body);
+    }
+}
@@ -0,0 +1,67 @@
+package de.codebarista.shopware.appserver.benchmarks;
+
+import de.codebarista.shopware.appserver.api.ApiConstants;
+import de.codebarista.shopware.appserver.config.ShopwareSignatureVerificationFilter;
+import de.codebarista.shopware.appserver.service.AppLookupService;
+import de.codebarista.shopware.appserver.service.SignatureService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Signature verification of signed webhook requests with bodies of several sizes, including the shop ID lookup and
+ * the decoding of the body.
+ * <p>
+ * Every invocation builds a fresh mock request, because the filter runs only once per request. The allocations
+ * of the mock request are part of the reported allocation rate, but do not depend on the body size.
+ */
+@State(Scope.Benchmark)
+public class SignatureVerificationFilterBenchmark {
+    @Param({"1", "10", "1000"})
+    public int payloadEntries;
+
+    private ShopwareSignatureVerificationFilter filter;
+    private byte[] body;
+    private String signature;
+
+    @Setup
+    public void setUp() {
+        var objectMapper = BenchmarkFixtures.objectMapper();
+        var signatureService = new SignatureService(objectMapper);
+        filter = new ShopwareSignatureVerificationFilter(BenchmarkFixtures.shopManagementService(), signatureService,
+                new AppLookupService(List.of(BenchmarkFixtures.APP)), objectMapper);
+        String eventBody = BenchmarkFixtures.eventBody(payloadEntries);
+        body = eventBody.getBytes(StandardCharsets.UTF_8);
+        signature = signatureService.calculateSignature(eventBody, BenchmarkFixtures.SHOP_SECRET);
+    }
+
+    @Benchmark
+    public void doFilterInternal(Blackhole blackhole) throws ServletException, IOException {
+        var request = new MockHttpServletRequest("POST", "/shopware/api/v1/event");
+        request.addHeader(HttpHeaders.HOST, BenchmarkFixtures.HOST);
+        request.addHeader(ApiConstants.SHOPWARE_SHOP_SIGNATURE_HEADER, signature);
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent(body);
+        FilterChain chain = (filteredRequest, filteredResponse) ->
+                blackhole.consume(SecurityContextHolder.getContext().getAuthentication());
+        try {
+            filter.doFilter(request, new MockHttpServletResponse(), chain);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
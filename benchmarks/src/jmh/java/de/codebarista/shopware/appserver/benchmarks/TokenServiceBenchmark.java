@@ -0,0 +1,34 @@
+package de.codebarista.shopware.appserver.benchmarks;
+
+import de.codebarista.shopware.appserver.service.SignatureService;
+import de.codebarista.shopware.appserver.service.TokenServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Generation and validation of app tokens used by admin extensions.
+ */
+@State(Scope.Benchmark)
+public class TokenServiceBenchmark {
+    private TokenServiceImpl tokenService;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        tokenService = new TokenServiceImpl(BenchmarkFixtures.shopManagementService(),
+                new SignatureService(BenchmarkFixtures.objectMapper()));
+        token = tokenService.generateAppToken(BenchmarkFixtures.APP, BenchmarkFixtures.SHOP_ID);
+    }
+
+    @Benchmark
+    public String generateAppToken() {
+        return tokenService.generateAppToken(BenchmarkFixtures.APP, BenchmarkFixtures.SHOP_ID);
+    }
+
+    @Benchmark
+    public boolean isAppTokenValid() {
+        return tokenService.isAppTokenValid(BenchmarkFixtures.APP, BenchmarkFixtures.SHOP_ID, token);
+    }
+}
@@ -1,12 +1,19 @@
 package de.codebarista.shopware.appserver;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.codebarista.shopware.appserver.service.BulkImportSession;
+import de.codebarista.shopware.appserver.service.SyncBatcher;
+import de.codebarista.shopware.appserver.service.dto.search.SearchKeyset;
 import de.codebarista.shopware.appserver.service.dto.search.SearchQuery;
 import de.codebarista.shopware.appserver.service.dto.search.SearchResult;
+import de.codebarista.shopware.appserver.service.dto.sync.IndexingBehavior;
 import de.codebarista.shopware.appserver.service.dto.sync.SyncResult;
 import jakarta.annotation.Nonnull;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Service interface for interacting with the Shopware Admin API.
@@ -88,6 +95,68 @@ public interface AdminApi {
         return search(app, shopId, entityName, query, responseType, null);
     }
 
+    /**
+     * Like {@link AdminApi#search(ShopwareApp, String, String, SearchQuery, Class, String)}, but the pages after the
+     * first one are fetched concurrently. The first page is requested with the exact total count, which determines
+     * the remaining pages. The results are returned in the order of the pages.
+     * <p>
+     * The query is not modified, so the same query can be used by several threads at the same time.
+     * Implementations that cannot fetch pages concurrently fetch them one after another.
+     *
+     * @return a list of all entity instances that match the query
+     */
+    @Nonnull default <T> List<T> searchInParallel(ShopwareApp app, String shopId, String entityName, SearchQuery query, Class<? extends SearchResult<T>> responseType, String shopwareLanguageId) {
+        return search(app, shopId, entityName, query, responseType, shopwareLanguageId);
+    }
+
+    /**
+     * Streams all instances of an entity that match the query. In contrast to
+     * {@link AdminApi#search(ShopwareApp, String, String, SearchQuery, Class, String)}, the pages are fetched lazily
+     * while the stream is consumed, so only the current page is held in memory. Use it for exports of large shops.
+     * <p>
+     * The stream should be closed, e.g. with try-with-resources, if it is not consumed completely.
+     * Implementations that cannot fetch pages lazily return the stream of the complete search result.
+     *
+     * @param prefetchNextPage whether the next page is fetched in the background while the current one is consumed
+     * @return a sequential stream of all entity instances that match the query
+     */
+    @Nonnull default <T> Stream<T> searchStream(ShopwareApp app, String shopId, String entityName, SearchQuery query, Class<? extends SearchResult<T>> responseType, String shopwareLanguageId, boolean prefetchNextPage) {
+        return search(app, shopId, entityName, query, responseType, shopwareLanguageId).stream();
+    }
+
+    /**
+     * Like {@link AdminApi#searchStream(ShopwareApp, String, String, SearchQuery, Class, String, boolean)} but {@code shopwareLanguageId} set to {@code null} and without prefetching
+     */
+    @Nonnull default <T> Stream<T> searchStream(ShopwareApp app, String shopId, String entityName, SearchQuery query, Class<? extends SearchResult<T>> responseType) {
+        return searchStream(app, shopId, entityName, query, responseType, null, false);
+    }
+
+    /**
+     * Like {@link AdminApi#searchStream(ShopwareApp, String, String, SearchQuery, Class, String, boolean)}, but with
+     * keyset pagination instead of page numbers. Each page continues after the last entity of the previous page,
+     * so deep pages are as fast as the first one, and no total count is requested.
+     * <p>
+     * Implementations that do not support keyset pagination fall back to page numbers with the sorting of the keyset.
+     *
+     * @param keyset the unique key fields by which the entities are sorted; the query must not have sortings
+     * @return a sequential stream of all entity instances that match the query
+     */
+    @Nonnull default <T> Stream<T> searchStream(ShopwareApp app, String shopId, String entityName, SearchQuery query, Class<? extends SearchResult<T>> responseType, String shopwareLanguageId, SearchKeyset<T> keyset, boolean prefetchNextPage) {
+        return searchStream(app, shopId, entityName, keyset.sortedQuery(query), responseType, shopwareLanguageId, prefetchNextPage);
+    }
+
+    /**
+     * Like {@link AdminApi#searchStream(ShopwareApp, String, String, SearchQuery, Class, String, SearchKeyset, boolean)},
+     * but collects all entity instances into a list.
+     *
+     * @return a list of all entity instances that match the query
+     */
+    @Nonnull default <T> List<T> search(ShopwareApp app, String shopId, String entityName, SearchQuery query, Class<? extends SearchResult<T>> responseType, String shopwareLanguageId, SearchKeyset<T> keyset) {
+        try (Stream<T> entities = searchStream(app, shopId, entityName, query, responseType, shopwareLanguageId, keyset, false)) {
+            return entities.toList();
+        }
+    }
+
     /**
      * Calls an Admin API endpoint implemented by a custom endpoint app script
      * <p>
@@ -130,6 +199,66 @@ public interface AdminApi {
      */
     @Nonnull <T> T sync(ShopwareApp app, String shopId, Object requestBody, Class<T> responseClass);
 
+    /**
+     * Executes a sync operation against the Shopware Admin API with the given indexing behavior.
+     * {@link AdminApi#sync(ShopwareApp, String, Object, Class)} uses {@link IndexingBehavior#USE_QUEUE_INDEXING}.
+     * <p>
+     * Implementations that do not support other indexing behaviors ignore it.
+     *
+     * @param app              the app making the request
+     * @param shopId           the Shopware shop ID
+     * @param requestBody      the sync payload containing operations to perform
+     * @param responseClass    the class to deserialize the response into
+     * @param indexingBehavior when Shopware updates the indexes of the written entities
+     * @param <T>              the type of the response
+     * @return the deserialized sync response
+     */
+    @Nonnull default <T> T sync(ShopwareApp app, String shopId, Object requestBody, Class<T> responseClass,
+                                IndexingBehavior indexingBehavior) {
+        return sync(app, shopId, requestBody, responseClass);
+    }
+
+    /**
+     * Triggers a full indexing of the shop, e.g. after entities have been synced with
+     * {@link IndexingBehavior#DISABLE_INDEXING}.
+     *
+     * @param app    the app making the request
+     * @param shopId the Shopware shop ID
+     */
+    void triggerIndexing(ShopwareApp app, String shopId);
+
+    /**
+     * Creates a batcher that collects single upsert and delete operations for the shop and sends them in chunks
+     * via {@link AdminApi#sync(ShopwareApp, String, Object)}.
+     * <p>
+     * Implementations without an executor of their own send the chunks one after another on the calling thread.
+     * Their batchers have no flush interval, so an incomplete chunk is only sent by
+     * {@link SyncBatcher#flush()} or {@link SyncBatcher#complete()}.
+     *
+     * @param app    the app making the requests
+     * @param shopId the Shopware shop ID
+     * @return a new SyncBatcher, which should be closed after all operations have been added
+     */
+    @Nonnull default SyncBatcher syncBatcher(ShopwareApp app, String shopId) {
+        return new SyncBatcher(this, app, shopId, new ObjectMapper().findAndRegisterModules(), Runnable::run)
+                .parallelism(1)
+                .flushInterval(Duration.ZERO);
+    }
+
+    /**
+     * Starts a bulk import into the shop. The operations of the session are synced in chunks without indexing,
+     * and the shop is indexed once when the session is completed, instead of once per chunk.
+     * <p>
+     * The final indexing run is triggered with {@link AdminApi#triggerIndexing(ShopwareApp, String)}.
+     *
+     * @param app    the app making the requests
+     * @param shopId the Shopware shop ID
+     * @return a new BulkImportSession, which should be closed after all operations have been added
+     */
+    @Nonnull default BulkImportSession bulkImport(ShopwareApp app, String shopId) {
+        return new BulkImportSession(syncBatcher(app, shopId), () -> triggerIndexing(app, shopId), shopId);
+    }
+
     /**
      * Creates a UriComponentsBuilder pre-configured with the shop's base URL.
      * <p>
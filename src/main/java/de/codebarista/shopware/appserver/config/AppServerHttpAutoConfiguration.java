@@ -10,17 +10,21 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.http.HttpStatusCode;
-import org.springframework.http.client.BufferingClientHttpRequestFactory;
-import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.lang.NonNull;
 import org.springframework.web.client.DefaultResponseErrorHandler;
 import org.springframework.web.client.RestTemplate;
 
 import java.net.http.HttpClient;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Auto-configuration for HTTP client functionality in the Shopware App Server.
- * Configures RestTemplate for Shopware API communication with proper error handling and logging.
+ * Configures the HTTP client and RestTemplate for Shopware API communication with timeouts, proper error handling
+ * and logging.
  */
 @AutoConfiguration
 @ConditionalOnClass(RestTemplate.class)
@@ -29,27 +33,61 @@ public class AppServerHttpAutoConfiguration {
     private static final Logger LOGGER = LoggerFactory.getLogger(AppServerHttpAutoConfiguration.class);
 
     /**
-     * Creates a RestTemplate specifically configured for Shopware API communication.
+     * Creates the HTTP client that is used for all calls to shops, i.e. by the {@code shopwareRestTemplate}.
      * Features:
+     * - Connect timeout, so that unreachable shops fail fast
+     * - HTTP/2 with fallback to HTTP/1.1, unless disabled
+     * - Dedicated executor with a bounded number of threads
      * - Disabled automatic redirects to prevent infinite redirect loops
-     * - Buffered request factory to disable chunked encoding (required for some Shopware endpoints)
+     */
+    @Bean
+    @ConditionalOnMissingBean(name = "shopwareHttpClient")
+    public HttpClient shopwareHttpClient(AppServerProperties properties) {
+        // Not exposed as a bean, because an Executor bean would replace the task executor of Spring Boot.
+        // Idle threads time out, so the executor does not need to be shut down.
+        var threadNumber = new AtomicInteger();
+        int threads = properties.getHttpClientThreads();
+        var executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "shopware-http-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return HttpClient.newBuilder()
+                .connectTimeout(properties.getHttpConnectTimeout())
+                .version(properties.isHttp2Enabled() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .executor(executor)
+                // Disable automatic redirect following to prevent infinite redirects
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    /**
+     * Creates a RestTemplate specifically configured for Shopware API communication.
+     * Features:
+     * - Uses the {@code shopwareHttpClient} with a read timeout
+     * - Limits the concurrent requests per shop host
+     * - Request bodies with Content-Length instead of chunked encoding (required for some Shopware endpoints)
+     * - Response bodies streamed into the message converters without buffering, gzip compressed if enabled
      * - Custom error handler that treats all non-2xx responses as errors
      * - Optional request/response logging
      */
     @Bean
     @ConditionalOnMissingBean(name = "shopwareRestTemplate")
-    public RestTemplate shopwareRestTemplate(RestTemplateBuilder restTemplateBuilder, AppServerProperties properties) {
+    public RestTemplate shopwareRestTemplate(RestTemplateBuilder restTemplateBuilder, AppServerProperties properties,
+                                             HttpClient shopwareHttpClient) {
         var builder = restTemplateBuilder
                 .requestFactory(() -> {
-                    // Disable automatic redirect following to prevent infinite redirects
-                    var jdkClient = HttpClient.newBuilder()
-                            .followRedirects(HttpClient.Redirect.NEVER)
-                            .build();
-                    var jdkClientFactory = new JdkClientHttpRequestFactory(jdkClient);
-                    // Wrap in a buffering request factory to disable chunked transfer encoding which does not work
-                    // with some Shopware Admin-API endpoints. The complete request body will be buffered in memory
-                    // before the request is sent off.
-                    return new BufferingClientHttpRequestFactory(jdkClientFactory);
+                    // Sends every request with a Content-Length, because chunked transfer encoding does not work
+                    // with some Shopware Admin-API endpoints
+                    ClientHttpRequestFactory requestFactory = new ShopwareClientHttpRequestFactory(shopwareHttpClient,
+                            properties.getHttpReadTimeout(), properties.isHttpResponseCompressionEnabled());
+                    if (properties.getHttpMaxConcurrentRequestsPerHost() > 0) {
+                        requestFactory = new HostConcurrencyLimitingRequestFactory(requestFactory,
+                                properties.getHttpMaxConcurrentRequestsPerHost(), properties.getHttpPermitAcquireTimeout());
+                    }
+                    return requestFactory;
                 })
                 // Use error handler that throws an exception for all non 2xx response status codes.
                 // The default handler only throws exceptions for 4xx and 5xx but not 1xx and 3xx codes.
@@ -62,7 +100,10 @@ public class AppServerHttpAutoConfiguration {
 
         if (properties.isHttpRequestResponseLoggingEnabled()) {
             LOGGER.info("Enabling HTTP request/response logging for Shopware API calls");
-            builder.interceptors(new HttpRequestResponseLoggingInterceptor());
+            builder.interceptors(new HttpRequestResponseLoggingInterceptor(
+                    properties.getHttpRequestResponseLoggingMaxBytes(),
+                    properties.getHttpRequestResponseLoggingSampleRate(),
+                    properties.getHttpRequestResponseLoggingShopHosts()));
         } else {
             LOGGER.debug("HTTP request/response logging is disabled");
         }
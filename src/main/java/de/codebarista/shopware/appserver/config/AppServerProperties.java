@@ -1,6 +1,10 @@
 package de.codebarista.shopware.appserver.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
 
 /**
  * Configuration properties for the Shopware App Server.
@@ -10,10 +14,25 @@ public class AppServerProperties {
 
     /**
      * Enable HTTP request/response logging for debugging purposes.
-     * When enabled, all HTTP requests to Shopware APIs will be logged.
+     * When enabled, HTTP requests to Shopware APIs are logged by the {@code AdminApiHTTPClient} logger at debug level.
      */
     private boolean httpRequestResponseLoggingEnabled = false;
 
+    /**
+     * Maximum number of bytes that are logged of each request and response body
+     */
+    private int httpRequestResponseLoggingMaxBytes = 4096;
+
+    /**
+     * Fraction of the requests that are logged, between 0 and 1
+     */
+    private double httpRequestResponseLoggingSampleRate = 1.0;
+
+    /**
+     * Shop hosts whose requests are logged. If empty, requests to all shops are logged.
+     */
+    private List<String> httpRequestResponseLoggingShopHosts = List.of();
+
     /**
      * Map localhost IP addresses to localhost domain name in URLs.
      * Useful for development when Shopware expects domain names instead of IP addresses.
@@ -33,6 +52,158 @@ public class AppServerProperties {
      */
     private boolean enforceReRegistrationWithShopSignature = false;
 
+    /**
+     * Maximum number of shops kept in the in-memory shop cache.
+     * Shops are read on every request but change rarely, so they are cached after the first lookup.
+     * Set to 0 to disable the cache.
+     */
+    private int shopCacheSize = 10_000;
+
+    /**
+     * Interval in which the shop change feed is polled for shops changed by other app server nodes
+     * sharing the same database, e.g. {@code 5s}. Polling is disabled by default and only needs to be
+     * enabled if several nodes are running.
+     */
+    private Duration shopChangeFeedPollInterval = Duration.ZERO;
+
+    /**
+     * Interval in which the last usage of shops is written to {@code SHOPWARE_SHOP.LAST_USED_AT}.
+     */
+    private Duration shopActivityFlushInterval = Duration.ofMinutes(1);
+
+    /**
+     * Number of used shops that triggers writing their last usage before the flush interval has passed.
+     */
+    private int shopActivityFlushThreshold = 1000;
+
+    /**
+     * Renew the Admin API access tokens of recently active shops in the background before they become stale,
+     * so that Admin API calls do not have to wait for a token request.
+     */
+    private boolean accessTokenRefreshAheadEnabled = false;
+
+    /**
+     * Shops whose access token has been used within this window are considered active for refresh-ahead.
+     */
+    private Duration accessTokenRefreshAheadActiveWindow = Duration.ofMinutes(15);
+
+    /**
+     * Maximum number of cached Admin API access tokens. The least recently used tokens are evicted first.
+     */
+    private int accessTokenCacheMaxSize = 10_000;
+
+    /**
+     * Cached Admin API access tokens that have not been used for this time are evicted.
+     */
+    private Duration accessTokenCacheIdleTimeout = Duration.ofHours(1);
+
+    /**
+     * Whether Admin API access tokens are stored encrypted in the database and shared by all app server nodes,
+     * so that only one node requests a token for a shop at a time
+     */
+    private boolean accessTokenStoreEnabled = false;
+
+    /**
+     * Maximum time to establish a connection to a shop
+     */
+    private Duration httpConnectTimeout = Duration.ofSeconds(5);
+
+    /**
+     * Maximum time to wait for the response headers of a shop and, while the body is read, for further data of the
+     * body. A large body that keeps arriving is not cut off, a body that stalls for this long fails.
+     */
+    private Duration httpReadTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Whether HTTP/2 is preferred for calls to shops. Requests to a shop that supports HTTP/2 are multiplexed over
+     * a single connection. Shops that do not support it are called with HTTP/1.1.
+     */
+    private boolean http2Enabled = true;
+
+    /**
+     * Number of threads of the HTTP client that handle the responses of shops
+     */
+    private int httpClientThreads = 8;
+
+    /**
+     * Maximum number of concurrent requests to the same shop host. Further requests wait up to the
+     * {@link #httpPermitAcquireTimeout} and then fail. {@code 0} disables the limit.
+     */
+    private int httpMaxConcurrentRequestsPerHost = 32;
+
+    /**
+     * Maximum time a request waits for a free slot when {@link #httpMaxConcurrentRequestsPerHost} requests to its
+     * shop host are already in flight
+     */
+    private Duration httpPermitAcquireTimeout = Duration.ofSeconds(5);
+
+    /**
+     * Whether responses of shops are requested gzip compressed ({@code Accept-Encoding: gzip}).
+     * Compressed responses are decompressed while they are read.
+     */
+    private boolean httpResponseCompressionEnabled = true;
+
+    /**
+     * Whether the bodies of Admin API sync and entity requests are sent gzip compressed
+     * ({@code Content-Encoding: gzip}). Requires a web server in front of Shopware that decompresses request bodies.
+     */
+    private boolean adminApiRequestCompressionEnabled = false;
+
+    /**
+     * Whether the concurrent Admin API calls per shop host are limited by a limit that adapts to the
+     * {@code 429}/{@code 503} responses and timeouts of the shop.
+     */
+    private boolean adminApiAdaptiveConcurrencyEnabled = false;
+
+    /**
+     * Concurrent Admin API calls that are allowed to a shop host before its limit has adapted.
+     */
+    private int adminApiInitialConcurrency = 4;
+
+    /**
+     * Upper bound of the adaptive limit of concurrent Admin API calls per shop host.
+     */
+    private int adminApiMaxConcurrency = 32;
+
+    /**
+     * Maximum time an Admin API call over the limit of its shop host waits for a free slot before it fails.
+     * {@code 0} makes such calls fail immediately.
+     */
+    private Duration adminApiConcurrencyQueueTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Maximum number of pages that {@code AdminApi.searchInParallel} fetches from a shop at the same time,
+     * shared by all concurrent searches of the shop.
+     */
+    private int adminApiSearchParallelism = 4;
+
+    /**
+     * Number of threads that fetch the pages of parallel searches and send the chunks of sync batchers,
+     * shared by all shops.
+     */
+    private int adminApiThreads = 16;
+
+    /**
+     * Default maximum number of operations per chunk of a {@code SyncBatcher}.
+     */
+    private int adminApiSyncChunkOperations = 500;
+
+    /**
+     * Default maximum serialized size of the operations per chunk of a {@code SyncBatcher}.
+     */
+    private DataSize adminApiSyncChunkSize = DataSize.ofMegabytes(4);
+
+    /**
+     * Default maximum time an operation of a {@code SyncBatcher} waits for its chunk to be sent.
+     * {@code 0} disables the timed flush.
+     */
+    private Duration adminApiSyncFlushInterval = Duration.ofSeconds(5);
+
+    /**
+     * Default maximum number of chunks that a {@code SyncBatcher} sends at the same time.
+     */
+    private int adminApiSyncParallelism = 2;
+
     public boolean isHttpRequestResponseLoggingEnabled() {
         return httpRequestResponseLoggingEnabled;
     }
@@ -76,4 +247,424 @@ public class AppServerProperties {
     public void setEnforceReRegistrationWithShopSignature(boolean enforceReRegistrationWithShopSignature) {
         this.enforceReRegistrationWithShopSignature = enforceReRegistrationWithShopSignature;
     }
+
+    /**
+     * Gets the {@link #shopCacheSize}.
+     */
+    public int getShopCacheSize() {
+        return shopCacheSize;
+    }
+
+    /**
+     * Sets the {@link #shopCacheSize}
+     */
+    public void setShopCacheSize(int shopCacheSize) {
+        this.shopCacheSize = shopCacheSize;
+    }
+
+    /**
+     * Gets the {@link #shopChangeFeedPollInterval}.
+     */
+    public Duration getShopChangeFeedPollInterval() {
+        return shopChangeFeedPollInterval;
+    }
+
+    /**
+     * Sets the {@link #shopChangeFeedPollInterval}
+     */
+    public void setShopChangeFeedPollInterval(Duration shopChangeFeedPollInterval) {
+        this.shopChangeFeedPollInterval = shopChangeFeedPollInterval;
+    }
+
+    /**
+     * Gets the {@link #shopActivityFlushInterval}.
+     */
+    public Duration getShopActivityFlushInterval() {
+        return shopActivityFlushInterval;
+    }
+
+    /**
+     * Sets the {@link #shopActivityFlushInterval}
+     */
+    public void setShopActivityFlushInterval(Duration shopActivityFlushInterval) {
+        this.shopActivityFlushInterval = shopActivityFlushInterval;
+    }
+
+    /**
+     * Gets the {@link #shopActivityFlushThreshold}.
+     */
+    public int getShopActivityFlushThreshold() {
+        return shopActivityFlushThreshold;
+    }
+
+    /**
+     * Sets the {@link #shopActivityFlushThreshold}
+     */
+    public void setShopActivityFlushThreshold(int shopActivityFlushThreshold) {
+        this.shopActivityFlushThreshold = shopActivityFlushThreshold;
+    }
+
+    /**
+     * Gets the {@link #accessTokenRefreshAheadEnabled}.
+     */
+    public boolean isAccessTokenRefreshAheadEnabled() {
+        return accessTokenRefreshAheadEnabled;
+    }
+
+    /**
+     * Sets the {@link #accessTokenRefreshAheadEnabled}
+     */
+    public void setAccessTokenRefreshAheadEnabled(boolean accessTokenRefreshAheadEnabled) {
+        this.accessTokenRefreshAheadEnabled = accessTokenRefreshAheadEnabled;
+    }
+
+    /**
+     * Gets the {@link #accessTokenRefreshAheadActiveWindow}.
+     */
+    public Duration getAccessTokenRefreshAheadActiveWindow() {
+        return accessTokenRefreshAheadActiveWindow;
+    }
+
+    /**
+     * Sets the {@link #accessTokenRefreshAheadActiveWindow}
+     */
+    public void setAccessTokenRefreshAheadActiveWindow(Duration accessTokenRefreshAheadActiveWindow) {
+        this.accessTokenRefreshAheadActiveWindow = accessTokenRefreshAheadActiveWindow;
+    }
+
+    /**
+     * Gets the {@link #accessTokenCacheMaxSize}.
+     */
+    public int getAccessTokenCacheMaxSize() {
+        return accessTokenCacheMaxSize;
+    }
+
+    /**
+     * Sets the {@link #accessTokenCacheMaxSize}
+     */
+    public void setAccessTokenCacheMaxSize(int accessTokenCacheMaxSize) {
+        this.accessTokenCacheMaxSize = accessTokenCacheMaxSize;
+    }
+
+    /**
+     * Gets the {@link #accessTokenCacheIdleTimeout}.
+     */
+    public Duration getAccessTokenCacheIdleTimeout() {
+        return accessTokenCacheIdleTimeout;
+    }
+
+    /**
+     * Sets the {@link #accessTokenCacheIdleTimeout}
+     */
+    public void setAccessTokenCacheIdleTimeout(Duration accessTokenCacheIdleTimeout) {
+        this.accessTokenCacheIdleTimeout = accessTokenCacheIdleTimeout;
+    }
+
+    /**
+     * Gets the {@link #accessTokenStoreEnabled}.
+     */
+    public boolean isAccessTokenStoreEnabled() {
+        return accessTokenStoreEnabled;
+    }
+
+    /**
+     * Sets the {@link #accessTokenStoreEnabled}
+     */
+    public void setAccessTokenStoreEnabled(boolean accessTokenStoreEnabled) {
+        this.accessTokenStoreEnabled = accessTokenStoreEnabled;
+    }
+
+    /**
+     * Gets the {@link #httpConnectTimeout}.
+     */
+    public Duration getHttpConnectTimeout() {
+        return httpConnectTimeout;
+    }
+
+    /**
+     * Sets the {@link #httpConnectTimeout}
+     */
+    public void setHttpConnectTimeout(Duration httpConnectTimeout) {
+        this.httpConnectTimeout = httpConnectTimeout;
+    }
+
+    /**
+     * Gets the {@link #httpReadTimeout}.
+     */
+    public Duration getHttpReadTimeout() {
+        return httpReadTimeout;
+    }
+
+    /**
+     * Sets the {@link #httpReadTimeout}
+     */
+    public void setHttpReadTimeout(Duration httpReadTimeout) {
+        this.httpReadTimeout = httpReadTimeout;
+    }
+
+    /**
+     * Gets the {@link #http2Enabled}.
+     */
+    public boolean isHttp2Enabled() {
+        return http2Enabled;
+    }
+
+    /**
+     * Sets the {@link #http2Enabled}
+     */
+    public void setHttp2Enabled(boolean http2Enabled) {
+        this.http2Enabled = http2Enabled;
+    }
+
+    /**
+     * Gets the {@link #httpClientThreads}.
+     */
+    public int getHttpClientThreads() {
+        return httpClientThreads;
+    }
+
+    /**
+     * Sets the {@link #httpClientThreads}
+     */
+    public void setHttpClientThreads(int httpClientThreads) {
+        this.httpClientThreads = httpClientThreads;
+    }
+
+    /**
+     * Gets the {@link #httpMaxConcurrentRequestsPerHost}.
+     */
+    public int getHttpMaxConcurrentRequestsPerHost() {
+        return httpMaxConcurrentRequestsPerHost;
+    }
+
+    /**
+     * Sets the {@link #httpMaxConcurrentRequestsPerHost}
+     */
+    public void setHttpMaxConcurrentRequestsPerHost(int httpMaxConcurrentRequestsPerHost) {
+        this.httpMaxConcurrentRequestsPerHost = httpMaxConcurrentRequestsPerHost;
+    }
+
+    /**
+     * Gets the {@link #httpPermitAcquireTimeout}.
+     */
+    public Duration getHttpPermitAcquireTimeout() {
+        return httpPermitAcquireTimeout;
+    }
+
+    /**
+     * Sets the {@link #httpPermitAcquireTimeout}
+     */
+    public void setHttpPermitAcquireTimeout(Duration httpPermitAcquireTimeout) {
+        this.httpPermitAcquireTimeout = httpPermitAcquireTimeout;
+    }
+
+    /**
+     * Gets the {@link #httpResponseCompressionEnabled}.
+     */
+    public boolean isHttpResponseCompressionEnabled() {
+        return httpResponseCompressionEnabled;
+    }
+
+    /**
+     * Sets the {@link #httpResponseCompressionEnabled}
+     */
+    public void setHttpResponseCompressionEnabled(boolean httpResponseCompressionEnabled) {
+        this.httpResponseCompressionEnabled = httpResponseCompressionEnabled;
+    }
+
+    /**
+     * Gets the {@link #adminApiRequestCompressionEnabled}.
+     */
+    public boolean isAdminApiRequestCompressionEnabled() {
+        return adminApiRequestCompressionEnabled;
+    }
+
+    /**
+     * Sets the {@link #adminApiRequestCompressionEnabled}
+     */
+    public void setAdminApiRequestCompressionEnabled(boolean adminApiRequestCompressionEnabled) {
+        this.adminApiRequestCompressionEnabled = adminApiRequestCompressionEnabled;
+    }
+
+    /**
+     * Gets the {@link #httpRequestResponseLoggingMaxBytes}.
+     */
+    public int getHttpRequestResponseLoggingMaxBytes() {
+        return httpRequestResponseLoggingMaxBytes;
+    }
+
+    /**
+     * Sets the {@link #httpRequestResponseLoggingMaxBytes}
+     */
+    public void setHttpRequestResponseLoggingMaxBytes(int httpRequestResponseLoggingMaxBytes) {
+        this.httpRequestResponseLoggingMaxBytes = httpRequestResponseLoggingMaxBytes;
+    }
+
+    /**
+     * Gets the {@link #httpRequestResponseLoggingSampleRate}.
+     */
+    public double getHttpRequestResponseLoggingSampleRate() {
+        return httpRequestResponseLoggingSampleRate;
+    }
+
+    /**
+     * Sets the {@link #httpRequestResponseLoggingSampleRate}
+     */
+    public void setHttpRequestResponseLoggingSampleRate(double httpRequestResponseLoggingSampleRate) {
+        this.httpRequestResponseLoggingSampleRate = httpRequestResponseLoggingSampleRate;
+    }
+
+    /**
+     * Gets the {@link #httpRequestResponseLoggingShopHosts}.
+     */
+    public List<String> getHttpRequestResponseLoggingShopHosts() {
+        return httpRequestResponseLoggingShopHosts;
+    }
+
+    /**
+     * Sets the {@link #httpRequestResponseLoggingShopHosts}
+     */
+    public void setHttpRequestResponseLoggingShopHosts(List<String> httpRequestResponseLoggingShopHosts) {
+        this.httpRequestResponseLoggingShopHosts = httpRequestResponseLoggingShopHosts;
+    }
+
+    /**
+     * Gets the {@link #adminApiAdaptiveConcurrencyEnabled}.
+     */
+    public boolean isAdminApiAdaptiveConcurrencyEnabled() {
+        return adminApiAdaptiveConcurrencyEnabled;
+    }
+
+    /**
+     * Sets the {@link #adminApiAdaptiveConcurrencyEnabled}
+     */
+    public void setAdminApiAdaptiveConcurrencyEnabled(boolean adminApiAdaptiveConcurrencyEnabled) {
+        this.adminApiAdaptiveConcurrencyEnabled = adminApiAdaptiveConcurrencyEnabled;
+    }
+
+    /**
+     * Gets the {@link #adminApiInitialConcurrency}.
+     */
+    public int getAdminApiInitialConcurrency() {
+        return adminApiInitialConcurrency;
+    }
+
+    /**
+     * Sets the {@link #adminApiInitialConcurrency}
+     */
+    public void setAdminApiInitialConcurrency(int adminApiInitialConcurrency) {
+        this.adminApiInitialConcurrency = adminApiInitialConcurrency;
+    }
+
+    /**
+     * Gets the {@link #adminApiMaxConcurrency}.
+     */
+    public int getAdminApiMaxConcurrency() {
+        return adminApiMaxConcurrency;
+    }
+
+    /**
+     * Sets the {@link #adminApiMaxConcurrency}
+     */
+    public void setAdminApiMaxConcurrency(int adminApiMaxConcurrency) {
+        this.adminApiMaxConcurrency = adminApiMaxConcurrency;
+    }
+
+    /**
+     * Gets the {@link #adminApiConcurrencyQueueTimeout}.
+     */
+    public Duration getAdminApiConcurrencyQueueTimeout() {
+        return adminApiConcurrencyQueueTimeout;
+    }
+
+    /**
+     * Sets the {@link #adminApiConcurrencyQueueTimeout}
+     */
+    public void setAdminApiConcurrencyQueueTimeout(Duration adminApiConcurrencyQueueTimeout) {
+        this.adminApiConcurrencyQueueTimeout = adminApiConcurrencyQueueTimeout;
+    }
+
+    /**
+     * Gets the {@link #adminApiSearchParallelism}.
+     */
+    public int getAdminApiSearchParallelism() {
+        return adminApiSearchParallelism;
+    }
+
+    /**
+     * Sets the {@link #adminApiSearchParallelism}
+     */
+    public void setAdminApiSearchParallelism(int adminApiSearchParallelism) {
+        this.adminApiSearchParallelism = adminApiSearchParallelism;
+    }
+
+    /**
+     * Gets the {@link #adminApiThreads}.
+     */
+    public int getAdminApiThreads() {
+        return adminApiThreads;
+    }
+
+    /**
+     * Sets the {@link #adminApiThreads}
+     */
+    public void setAdminApiThreads(int adminApiThreads) {
+        this.adminApiThreads = adminApiThreads;
+    }
+
+    /**
+     * Gets the {@link #adminApiSyncChunkOperations}.
+     */
+    public int getAdminApiSyncChunkOperations() {
+        return adminApiSyncChunkOperations;
+    }
+
+    /**
+     * Sets the {@link #adminApiSyncChunkOperations}
+     */
+    public void setAdminApiSyncChunkOperations(int adminApiSyncChunkOperations) {
+        this.adminApiSyncChunkOperations = adminApiSyncChunkOperations;
+    }
+
+    /**
+     * Gets the {@link #adminApiSyncChunkSize}.
+     */
+    public DataSize getAdminApiSyncChunkSize() {
+        return adminApiSyncChunkSize;
+    }
+
+    /**
+     * Sets the {@link #adminApiSyncChunkSize}
+     */
+    public void setAdminApiSyncChunkSize(DataSize adminApiSyncChunkSize) {
+        this.adminApiSyncChunkSize = adminApiSyncChunkSize;
+    }
+
+    /**
+     * Gets the {@link #adminApiSyncFlushInterval}.
+     */
+    public Duration getAdminApiSyncFlushInterval() {
+        return adminApiSyncFlushInterval;
+    }
+
+    /**
+     * Sets the {@link #adminApiSyncFlushInterval}
+     */
+    public void setAdminApiSyncFlushInterval(Duration adminApiSyncFlushInterval) {
+        this.adminApiSyncFlushInterval = adminApiSyncFlushInterval;
+    }
+
+    /**
+     * Gets the {@link #adminApiSyncParallelism}.
+     */
+    public int getAdminApiSyncParallelism() {
+        return adminApiSyncParallelism;
+    }
+
+    /**
+     * Sets the {@link #adminApiSyncParallelism}
+     */
+    public void setAdminApiSyncParallelism(int adminApiSyncParallelism) {
+        this.adminApiSyncParallelism = adminApiSyncParallelism;
+    }
 }
@@ -3,9 +3,15 @@ package de.codebarista.shopware.appserver.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import de.codebarista.shopware.appserver.ShopwareApp;
 import de.codebarista.shopware.appserver.TokenService;
+import de.codebarista.shopware.appserver.model.ShopwareAccessTokenEntityRepository;
+import de.codebarista.shopware.appserver.model.ShopwareShopChangeEntityRepository;
 import de.codebarista.shopware.appserver.model.ShopwareShopEntityRepository;
 import de.codebarista.shopware.appserver.service.AdminApiService;
 import de.codebarista.shopware.appserver.service.AppLookupService;
+import de.codebarista.shopware.appserver.service.SharedAccessTokenStore;
+import de.codebarista.shopware.appserver.service.ShopActivityTracker;
+import de.codebarista.shopware.appserver.service.ShopChangeFeed;
+import de.codebarista.shopware.appserver.service.ShopChangeFeedPoller;
 import de.codebarista.shopware.appserver.service.ShopManagementService;
 import de.codebarista.shopware.appserver.service.ShopwareAccessTokenClientService;
 import de.codebarista.shopware.appserver.service.SignatureService;
@@ -14,8 +20,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
+import org.springframework.lang.Nullable;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.List;
@@ -34,7 +43,7 @@ public class AppServerServiceAutoConfiguration {
 
     /**
      * Service for cryptographic signature calculation and verification.
-     * Handles HMAC-SHA256 signatures and SHA-256 hashing.
+     * Handles HMAC-SHA256 signatures and SHA-256 hashing. Initialized HMAC keys are cached per thread.
      * <p>
      * Users can override by defining their own {@code SignatureService} bean.
      *
@@ -64,6 +73,21 @@ public class AppServerServiceAutoConfiguration {
         return new AppLookupService(apps);
     }
 
+    /**
+     * Change feed of the shop registry, shared by all app server nodes using the same database.
+     * <p>
+     * Users can override by defining their own {@code ShopChangeFeed} bean.
+     *
+     * @param shopwareShopChangeEntityRepository Repository for the shop change entries
+     * @return Configured ShopChangeFeed
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public ShopChangeFeed shopChangeFeed(ShopwareShopChangeEntityRepository shopwareShopChangeEntityRepository) {
+        LOGGER.debug("Configuring ShopChangeFeed");
+        return new ShopChangeFeed(shopwareShopChangeEntityRepository);
+    }
+
     /**
      * Service for managing shop registrations and lifecycle.
      * Handles shop registration, confirmation, and deletion.
@@ -72,15 +96,82 @@ public class AppServerServiceAutoConfiguration {
      *
      * @param shopwareShopEntityRepository Repository for shop data persistence
      * @param properties App server configuration properties
+     * @param signatureService Service whose cached key material is evicted when shop secrets rotate
+     * @param shopChangeFeed Feed that shop changes are published to and received from other nodes
+     * @param transactionManager Transaction manager used to write a shop and its shop change feed entry together
      * @return Configured ShopManagementService
      */
     @Bean
     @ConditionalOnMissingBean
     public ShopManagementService shopManagementService(
             ShopwareShopEntityRepository shopwareShopEntityRepository,
-            AppServerProperties properties) {
+            AppServerProperties properties,
+            SignatureService signatureService,
+            ShopChangeFeed shopChangeFeed,
+            PlatformTransactionManager transactionManager) {
         LOGGER.debug("Configuring ShopManagementService");
-        return new ShopManagementService(shopwareShopEntityRepository, properties);
+        return new ShopManagementService(shopwareShopEntityRepository, properties, signatureService, shopChangeFeed,
+                transactionManager);
+    }
+
+    /**
+     * Polls the shop change feed in the background and invalidates shops changed by other nodes.
+     * <p>
+     * Users can override by defining their own {@code ShopChangeFeedPoller} bean.
+     *
+     * @param shopManagementService Service whose shop cache is invalidated
+     * @param properties App server configuration properties
+     * @return Configured ShopChangeFeedPoller
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public ShopChangeFeedPoller shopChangeFeedPoller(
+            ShopManagementService shopManagementService,
+            AppServerProperties properties) {
+        LOGGER.debug("Configuring ShopChangeFeedPoller with interval {}", properties.getShopChangeFeedPollInterval());
+        return new ShopChangeFeedPoller(shopManagementService, properties.getShopChangeFeedPollInterval());
+    }
+
+    /**
+     * Tracks the last usage of shops and writes it to the database in batches.
+     * <p>
+     * Users can override by defining their own {@code ShopActivityTracker} bean.
+     *
+     * @param shopwareShopEntityRepository Repository for shop data persistence
+     * @param transactionManager Transaction manager used to write all usages in a single transaction
+     * @param properties App server configuration properties
+     * @param shopManagementService Service whose shop cache is invalidated after the usages have been written
+     * @return Configured ShopActivityTracker
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public ShopActivityTracker shopActivityTracker(
+            ShopwareShopEntityRepository shopwareShopEntityRepository,
+            PlatformTransactionManager transactionManager,
+            AppServerProperties properties,
+            ShopManagementService shopManagementService) {
+        LOGGER.debug("Configuring ShopActivityTracker");
+        return new ShopActivityTracker(shopwareShopEntityRepository, transactionManager,
+                properties.getShopActivityFlushInterval(), properties.getShopActivityFlushThreshold(),
+                shopManagementService);
+    }
+
+    /**
+     * Store for Admin API access tokens shared by all app server nodes that use the same database.
+     * Only created if {@code app-server.access-token-store-enabled} is set.
+     * <p>
+     * Users can override by defining their own {@code SharedAccessTokenStore} bean.
+     *
+     * @param shopwareAccessTokenEntityRepository Repository for the stored access tokens
+     * @return Configured SharedAccessTokenStore
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(name = "app-server.access-token-store-enabled", havingValue = "true")
+    public SharedAccessTokenStore sharedAccessTokenStore(
+            ShopwareAccessTokenEntityRepository shopwareAccessTokenEntityRepository) {
+        LOGGER.debug("Configuring SharedAccessTokenStore");
+        return new SharedAccessTokenStore(shopwareAccessTokenEntityRepository);
     }
 
     /**
@@ -92,6 +183,7 @@ public class AppServerServiceAutoConfiguration {
      * @param shopwareRestTemplate RestTemplate configured for Shopware API calls
      * @param shopManagementService Service for accessing shop data
      * @param properties App server configuration properties
+     * @param sharedAccessTokenStore Store that shares tokens with other nodes, null if disabled
      * @return Configured ShopwareAccessTokenClientService
      */
     @Bean
@@ -99,9 +191,11 @@ public class AppServerServiceAutoConfiguration {
     public ShopwareAccessTokenClientService shopwareAccessTokenClientService(
             RestTemplate shopwareRestTemplate,
             ShopManagementService shopManagementService,
-            AppServerProperties properties) {
+            AppServerProperties properties,
+            @Nullable SharedAccessTokenStore sharedAccessTokenStore) {
         LOGGER.debug("Configuring ShopwareAccessTokenClientService");
-        return new ShopwareAccessTokenClientService(shopwareRestTemplate, shopManagementService, properties);
+        return new ShopwareAccessTokenClientService(shopwareRestTemplate, shopManagementService, properties,
+                sharedAccessTokenStore);
     }
 
     /**
@@ -115,6 +209,7 @@ public class AppServerServiceAutoConfiguration {
      * @param shopManagementService Service for accessing shop data
      * @param shopwareAccessTokenClientService Service for obtaining access tokens
      * @param properties App server configuration properties
+     * @param shopActivityTracker Tracker that records the shops called via the Admin API
      * @return Configured AdminApiService
      */
     @Bean
@@ -123,9 +218,11 @@ public class AppServerServiceAutoConfiguration {
             RestTemplate shopwareRestTemplate,
             ShopManagementService shopManagementService,
             ShopwareAccessTokenClientService shopwareAccessTokenClientService,
-            AppServerProperties properties) {
+            AppServerProperties properties,
+            ShopActivityTracker shopActivityTracker) {
         LOGGER.debug("Configuring AdminApiService");
-        return new AdminApiService(shopwareRestTemplate, shopManagementService, shopwareAccessTokenClientService, properties);
+        return new AdminApiService(shopwareRestTemplate, shopManagementService, shopwareAccessTokenClientService,
+                properties, shopActivityTracker);
     }
 
     /**
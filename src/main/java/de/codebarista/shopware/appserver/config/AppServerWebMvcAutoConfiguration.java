@@ -0,0 +1,28 @@
+package de.codebarista.shopware.appserver.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Auto-configuration for Spring MVC extensions used by the App Server controllers.
+ * Registers the resolver for {@link ShopwareRequestBody} parameters.
+ */
+@AutoConfiguration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class AppServerWebMvcAutoConfiguration implements WebMvcConfigurer {
+    private final ObjectMapper objectMapper;
+
+    public AppServerWebMvcAutoConfiguration(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(new ShopwareRequestBodyArgumentResolver(objectMapper));
+    }
+}
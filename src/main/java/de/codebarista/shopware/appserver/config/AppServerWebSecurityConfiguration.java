@@ -2,6 +2,7 @@ package de.codebarista.shopware.appserver.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import de.codebarista.shopware.appserver.service.AppLookupService;
+import de.codebarista.shopware.appserver.service.ShopActivityTracker;
 import de.codebarista.shopware.appserver.service.ShopManagementService;
 import de.codebarista.shopware.appserver.service.SignatureService;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
@@ -75,10 +76,11 @@ public class AppServerWebSecurityConfiguration {
             ShopManagementService shopManagementService,
             SignatureService signatureService,
             AppLookupService appLookupService,
-            ObjectMapper objectMapper
+            ObjectMapper objectMapper,
+            ShopActivityTracker shopActivityTracker
     ) {
         this.signatureVerificationFilter = new ShopwareSignatureVerificationFilter(shopManagementService,
-                signatureService, appLookupService, objectMapper);
+                signatureService, appLookupService, objectMapper, shopActivityTracker);
     }
 
     @Bean
@@ -0,0 +1,158 @@
+package de.codebarista.shopware.appserver.config;
+
+import de.codebarista.shopware.appserver.exception.ConcurrencyLimitExceededException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits the number of concurrent requests per host.
+ * <p>
+ * The JDK {@link java.net.http.HttpClient} opens as many connections to a host as there are concurrent HTTP/1.1
+ * requests, and multiplexes all HTTP/2 requests over a single connection without limiting them. Either way, a single
+ * slow shop could take all threads of the app server. A request holds a permit of its host from sending it until
+ * the response is closed. If no permit becomes available within the acquire timeout, the request fails with a
+ * {@link ConcurrencyLimitExceededException} instead of waiting for the slow shop.
+ */
+public class HostConcurrencyLimitingRequestFactory implements ClientHttpRequestFactory {
+    private final ClientHttpRequestFactory delegate;
+    private final int maxConcurrentRequestsPerHost;
+    private final long acquireTimeoutMillis;
+    private final Map<String, Semaphore> permitsByHost = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxConcurrentRequestsPerHost maximum number of requests to the same host that are in flight at a time
+     * @param acquireTimeout               maximum time a request waits for a permit
+     */
+    public HostConcurrencyLimitingRequestFactory(ClientHttpRequestFactory delegate,
+                                                 int maxConcurrentRequestsPerHost,
+                                                 Duration acquireTimeout) {
+        if (maxConcurrentRequestsPerHost < 1) {
+            throw new IllegalArgumentException("maxConcurrentRequestsPerHost must be positive");
+        }
+        this.delegate = delegate;
+        this.maxConcurrentRequestsPerHost = maxConcurrentRequestsPerHost;
+        this.acquireTimeoutMillis = acquireTimeout.toMillis();
+    }
+
+    @Override
+    @NonNull
+    public ClientHttpRequest createRequest(@NonNull URI uri, @NonNull HttpMethod httpMethod) throws IOException {
+        return new LimitedRequest(delegate.createRequest(uri, httpMethod));
+    }
+
+    private Semaphore getPermits(URI uri) {
+        String host = uri.getHost() + ':' + uri.getPort();
+        return permitsByHost.computeIfAbsent(host, key -> new Semaphore(maxConcurrentRequestsPerHost));
+    }
+
+    private class LimitedRequest extends AbstractClientHttpRequest {
+        private final ClientHttpRequest request;
+
+        LimitedRequest(ClientHttpRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        @NonNull
+        public HttpMethod getMethod() {
+            return request.getMethod();
+        }
+
+        @Override
+        @NonNull
+        public URI getURI() {
+            return request.getURI();
+        }
+
+        @Override
+        @NonNull
+        protected OutputStream getBodyInternal(@NonNull HttpHeaders headers) throws IOException {
+            request.getHeaders().putAll(headers);
+            return request.getBody();
+        }
+
+        @Override
+        @NonNull
+        protected ClientHttpResponse executeInternal(@NonNull HttpHeaders headers) throws IOException {
+            request.getHeaders().putAll(headers);
+            Semaphore permits = getPermits(getURI());
+            try {
+                if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    throw new ConcurrencyLimitExceededException("Too many concurrent requests to " + getURI().getHost());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConcurrencyLimitExceededException("Interrupted while waiting for a request to " + getURI().getHost());
+            }
+            try {
+                return new PermitReleasingResponse(request.execute(), permits);
+            } catch (IOException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+    }
+
+    private static class PermitReleasingResponse implements ClientHttpResponse {
+        private final ClientHttpResponse response;
+        private final Semaphore permits;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        PermitReleasingResponse(ClientHttpResponse response, Semaphore permits) {
+            this.response = response;
+            this.permits = permits;
+        }
+
+        @Override
+        @NonNull
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        @NonNull
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        @NonNull
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        @NonNull
+        public InputStream getBody() throws IOException {
+            return response.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                response.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    permits.release();
+                }
+            }
+        }
+    }
+}
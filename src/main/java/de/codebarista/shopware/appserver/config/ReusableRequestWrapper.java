@@ -10,22 +10,42 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * A custom implementation of {@code HttpServletRequestWrapper}. It provides a buffered
  * version of the request input stream, allowing repeated reads without consuming the original input stream.
  * The buffered content is stored in memory.
+ * <p>
+ * The body is captured exactly once into a single buffer. If the request declares its content length, the buffer
+ * is allocated with the final size up front. All streams and readers handed out by this wrapper read directly from
+ * that buffer without copying it.
  */
 class ReusableRequestWrapper extends HttpServletRequestWrapper {
+    /**
+     * Bodies up to this size are read into a buffer pre-allocated from the declared content length.
+     * Larger bodies are read incrementally, so a forged content length cannot trigger a huge allocation.
+     */
+    static final int MAX_PREALLOCATED_BODY_SIZE = 16 * 1024 * 1024;
+
     private final byte[] requestBodyBytes;
 
     ReusableRequestWrapper(HttpServletRequest request) throws IOException {
         super(request);
         try (InputStream inputStream = request.getInputStream()) {
-            requestBodyBytes = inputStream.readAllBytes();
+            requestBodyBytes = readBody(inputStream, request.getContentLengthLong());
         }
     }
 
+    /**
+     * Returns the captured body. The returned array is the buffer of this wrapper and must not be modified.
+     */
+    byte[] getBody() {
+        return requestBodyBytes;
+    }
+
     @Override
     public ServletInputStream getInputStream() {
         return new ByteArrayServletInputStream(requestBodyBytes);
@@ -33,7 +53,28 @@ class ReusableRequestWrapper extends HttpServletRequestWrapper {
 
     @Override
     public BufferedReader getReader() {
-        return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(requestBodyBytes)));
+        return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(requestBodyBytes), getBodyCharset()));
     }
 
+    private Charset getBodyCharset() {
+        String encoding = getCharacterEncoding();
+        if (encoding == null) {
+            return StandardCharsets.UTF_8;
+        }
+        try {
+            return Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    private static byte[] readBody(InputStream inputStream, long contentLength) throws IOException {
+        if (contentLength < 0 || contentLength > MAX_PREALLOCATED_BODY_SIZE) {
+            return inputStream.readAllBytes();
+        }
+        byte[] body = new byte[(int) contentLength];
+        int read = inputStream.readNBytes(body, 0, body.length);
+        // The client sent fewer bytes than announced
+        return read == body.length ? body : Arrays.copyOf(body, read);
+    }
 }
@@ -0,0 +1,325 @@
+package de.codebarista.shopware.appserver.config;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.lang.NonNull;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Request factory for calls to shops with the JDK {@link HttpClient}.
+ * <p>
+ * Some Shopware Admin API endpoints do not support chunked transfer encoding, so every request is sent with a
+ * {@code Content-Length}. The message converters serialize the body once into a growable byte array, which is
+ * handed to the HTTP client without copying it again. In contrast to
+ * {@link org.springframework.http.client.BufferingClientHttpRequestFactory}, responses are not buffered but
+ * streamed from the connection into the message converters.
+ * <p>
+ * Compression:
+ * - Request bodies of requests with {@code Content-Encoding: gzip} are compressed before they are sent.
+ *   Bodies smaller than {@link #MIN_COMPRESSED_BODY_SIZE} are sent uncompressed without that header.
+ * - If enabled, responses are requested with {@code Accept-Encoding: gzip} and decompressed while they are read.
+ * <p>
+ * The read timeout applies to the response headers and to every wait for further data of the body: the timeout of
+ * the JDK client only covers the wait for the headers, so the body is closed when no data has arrived for the read
+ * timeout. A shop that stalls in the middle of the body then fails the read with an {@link HttpTimeoutException}
+ * instead of blocking the caller, while a large body that keeps arriving is not cut off.
+ */
+public class ShopwareClientHttpRequestFactory implements ClientHttpRequestFactory {
+    /**
+     * Headers that the JDK HTTP client sets itself and does not allow to be set by the caller
+     */
+    private static final Set<String> RESTRICTED_HEADERS = Set.of(
+            "connection", "content-length", "expect", "host", "upgrade");
+
+    /**
+     * Minimum size of a request body to be compressed, smaller bodies do not benefit from compression
+     */
+    public static final int MIN_COMPRESSED_BODY_SIZE = 1024;
+
+    private static final String GZIP = "gzip";
+
+    private final HttpClient httpClient;
+    private final Duration readTimeout;
+    private final boolean responseCompressionEnabled;
+
+    /**
+     * @param readTimeout maximum time to wait for the response headers and for further data of the body
+     */
+    public ShopwareClientHttpRequestFactory(HttpClient httpClient, Duration readTimeout) {
+        this(httpClient, readTimeout, false);
+    }
+
+    /**
+     * @param readTimeout                maximum time to wait for the response headers and for further data of the body
+     * @param responseCompressionEnabled whether gzip compressed responses are accepted
+     */
+    public ShopwareClientHttpRequestFactory(HttpClient httpClient, Duration readTimeout,
+                                            boolean responseCompressionEnabled) {
+        this.httpClient = httpClient;
+        this.readTimeout = readTimeout;
+        this.responseCompressionEnabled = responseCompressionEnabled;
+    }
+
+    @Override
+    @NonNull
+    public ClientHttpRequest createRequest(@NonNull URI uri, @NonNull HttpMethod httpMethod) {
+        return new SizedBodyRequest(uri, httpMethod);
+    }
+
+    private class SizedBodyRequest extends AbstractClientHttpRequest {
+        private final URI uri;
+        private final HttpMethod method;
+        private final ExposedByteArrayOutputStream body = new ExposedByteArrayOutputStream();
+
+        SizedBodyRequest(URI uri, HttpMethod method) {
+            this.uri = uri;
+            this.method = method;
+        }
+
+        @Override
+        @NonNull
+        public HttpMethod getMethod() {
+            return method;
+        }
+
+        @Override
+        @NonNull
+        public URI getURI() {
+            return uri;
+        }
+
+        @Override
+        @NonNull
+        protected OutputStream getBodyInternal(@NonNull HttpHeaders headers) {
+            return body;
+        }
+
+        @Override
+        @NonNull
+        protected ClientHttpResponse executeInternal(@NonNull HttpHeaders headers) throws IOException {
+            ExposedByteArrayOutputStream sentBody = body;
+            if (GZIP.equalsIgnoreCase(headers.getFirst(HttpHeaders.CONTENT_ENCODING))) {
+                if (body.size() >= MIN_COMPRESSED_BODY_SIZE) {
+                    sentBody = compress(body);
+                } else {
+                    headers.remove(HttpHeaders.CONTENT_ENCODING);
+                }
+            }
+            if (responseCompressionEnabled && !headers.containsKey(HttpHeaders.ACCEPT_ENCODING)) {
+                headers.set(HttpHeaders.ACCEPT_ENCODING, GZIP);
+            }
+
+            var builder = HttpRequest.newBuilder(uri).timeout(readTimeout);
+            headers.forEach((name, values) -> {
+                if (!RESTRICTED_HEADERS.contains(name.toLowerCase())) {
+                    values.forEach(value -> builder.header(name, value));
+                }
+            });
+            var bodyPublisher = sentBody.size() > 0
+                    // The publisher wraps the array without copying it and sets the Content-Length
+                    ? HttpRequest.BodyPublishers.ofByteArray(sentBody.getBuffer(), 0, sentBody.size())
+                    : HttpRequest.BodyPublishers.noBody();
+            builder.method(method.name(), bodyPublisher);
+            try {
+                return new StreamingResponse(httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream()),
+                        readTimeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Request to " + uri + " has been interrupted", e);
+            }
+        }
+    }
+
+    private static ExposedByteArrayOutputStream compress(ExposedByteArrayOutputStream body) throws IOException {
+        // JSON typically compresses to well below a quarter of its size
+        var compressed = new ExposedByteArrayOutputStream(Math.max(body.size() / 4, 512));
+        try (var gzip = new GZIPOutputStream(compressed, 8192)) {
+            gzip.write(body.getBuffer(), 0, body.size());
+        }
+        return compressed;
+    }
+
+    private static class StreamingResponse implements ClientHttpResponse {
+        private final HttpResponse<InputStream> response;
+        private final HttpHeaders headers;
+        private final boolean compressed;
+        private final long readTimeoutNanos;
+        private volatile long lastReadNanos = System.nanoTime();
+        private volatile boolean closed;
+        private volatile boolean timedOut;
+        private InputStream body;
+
+        StreamingResponse(HttpResponse<InputStream> response, Duration readTimeout) {
+            this.response = response;
+            this.readTimeoutNanos = readTimeout.toNanos();
+            scheduleTimeoutCheck(readTimeoutNanos);
+            var headerMap = new LinkedCaseInsensitiveMap<List<String>>();
+            headerMap.putAll(response.headers().map());
+            compressed = response.headers().firstValue(HttpHeaders.CONTENT_ENCODING)
+                    .filter(GZIP::equalsIgnoreCase)
+                    .isPresent();
+            if (compressed) {
+                // The body is decompressed, so the headers must not describe the compressed body anymore
+                headerMap.remove(HttpHeaders.CONTENT_ENCODING);
+                headerMap.remove(HttpHeaders.CONTENT_LENGTH);
+            }
+            this.headers = HttpHeaders.readOnlyHttpHeaders(new HttpHeaders(CollectionUtils.toMultiValueMap(headerMap)));
+        }
+
+        @Override
+        @NonNull
+        public HttpStatusCode getStatusCode() {
+            return HttpStatusCode.valueOf(response.statusCode());
+        }
+
+        @Override
+        @NonNull
+        public String getStatusText() {
+            HttpStatus status = HttpStatus.resolve(response.statusCode());
+            return status != null ? status.getReasonPhrase() : "";
+        }
+
+        @Override
+        @NonNull
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        @NonNull
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                InputStream timedBody = new TimedBody(response.body());
+                body = compressed ? decompress(timedBody) : timedBody;
+            }
+            return body;
+        }
+
+        private static InputStream decompress(InputStream compressedBody) throws IOException {
+            // Responses without body, e.g. 204, may still declare the content encoding
+            var pushbackBody = new PushbackInputStream(compressedBody, 1);
+            int firstByte = pushbackBody.read();
+            if (firstByte == -1) {
+                return pushbackBody;
+            }
+            pushbackBody.unread(firstByte);
+            return new GZIPInputStream(pushbackBody, 8192);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            closeBody();
+        }
+
+        private void scheduleTimeoutCheck(long delayNanos) {
+            CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS).execute(this::checkTimeout);
+        }
+
+        /**
+         * Closes the body if no data has been read for the read timeout, otherwise checks again when the read
+         * timeout would expire
+         */
+        private void checkTimeout() {
+            if (closed) {
+                return;
+            }
+            long idleNanos = System.nanoTime() - lastReadNanos;
+            if (idleNanos < readTimeoutNanos) {
+                scheduleTimeoutCheck(readTimeoutNanos - idleNanos);
+                return;
+            }
+            timedOut = true;
+            closeBody();
+        }
+
+        private void closeBody() {
+            try {
+                response.body().close();
+            } catch (IOException e) {
+                // Closing only releases the connection, there is nothing left to handle
+            }
+        }
+
+        /**
+         * Records the progress of reading the body and reports reads that failed because the body was closed by
+         * the read timeout as timeouts
+         */
+        private class TimedBody extends FilterInputStream {
+            TimedBody(InputStream body) {
+                super(body);
+            }
+
+            @Override
+            public int read() throws IOException {
+                try {
+                    int result = super.read();
+                    lastReadNanos = System.nanoTime();
+                    return result;
+                } catch (IOException e) {
+                    throw timedOut ? timeout(e) : e;
+                }
+            }
+
+            @Override
+            public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+                try {
+                    int result = super.read(buffer, offset, length);
+                    lastReadNanos = System.nanoTime();
+                    return result;
+                } catch (IOException e) {
+                    throw timedOut ? timeout(e) : e;
+                }
+            }
+
+            private IOException timeout(IOException cause) {
+                var timeout = new HttpTimeoutException("No data of the response body received within the read timeout");
+                timeout.initCause(cause);
+                return timeout;
+            }
+        }
+    }
+
+    /**
+     * Gives access to the internal buffer, so that the serialized body is not copied again
+     */
+    private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        ExposedByteArrayOutputStream() {
+            super(1024);
+        }
+
+        ExposedByteArrayOutputStream(int size) {
+            super(size);
+        }
+
+        byte[] getBuffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package de.codebarista.shopware.appserver.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds a controller method parameter to the body of a request sent by Shopware.
+ * <p>
+ * Works like {@link org.springframework.web.bind.annotation.RequestBody}, but reuses the DTO that the
+ * {@link ShopwareSignatureVerificationFilter} already decoded while it looked up the shop ID of the request.
+ * If the filter did not decode the body, e.g. because the route is unknown to it, the body is read with the
+ * application's {@code ObjectMapper}.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ShopwareRequestBody {
+}
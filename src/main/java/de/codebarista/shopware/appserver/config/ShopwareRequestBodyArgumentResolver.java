@@ -0,0 +1,57 @@
+package de.codebarista.shopware.appserver.config;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.lang.NonNull;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Resolves parameters annotated with {@link ShopwareRequestBody}.
+ */
+class ShopwareRequestBodyArgumentResolver implements HandlerMethodArgumentResolver {
+    private final ObjectMapper objectMapper;
+
+    ShopwareRequestBodyArgumentResolver(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public boolean supportsParameter(@NonNull MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(ShopwareRequestBody.class);
+    }
+
+    @Override
+    public Object resolveArgument(@NonNull MethodParameter parameter,
+                                  ModelAndViewContainer mavContainer,
+                                  @NonNull NativeWebRequest webRequest,
+                                  WebDataBinderFactory binderFactory) {
+        Object decodedBody = webRequest.getAttribute(
+                ShopwareSignatureVerificationFilter.DECODED_BODY_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (parameter.getParameterType().isInstance(decodedBody)) {
+            return decodedBody;
+        }
+
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        if (request == null) {
+            throw new IllegalStateException("Shopware request body can only be resolved for servlet requests");
+        }
+        JavaType bodyType = objectMapper.constructType(parameter.getGenericParameterType());
+        try (InputStream inputStream = request.getInputStream()) {
+            return objectMapper.readValue(inputStream, bodyType);
+        } catch (IOException e) {
+            throw new HttpMessageNotReadableException(
+                    "Could not read Shopware request body: " + e.getMessage(), e, new ServletServerHttpRequest(request));
+        }
+    }
+}
@@ -1,10 +1,16 @@
 package de.codebarista.shopware.appserver.config;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import de.codebarista.shopware.appserver.api.ApiConstants;
+import de.codebarista.shopware.appserver.api.dto.action.ActionRequestDto;
+import de.codebarista.shopware.appserver.api.dto.event.ShopwareEventDto;
+import de.codebarista.shopware.appserver.api.dto.registration.ShopwareAppConfirmationDto;
 import de.codebarista.shopware.appserver.model.ShopwareShopEntity;
 import de.codebarista.shopware.appserver.service.AppLookupService;
+import de.codebarista.shopware.appserver.service.ResolvedShop;
+import de.codebarista.shopware.appserver.service.ShopActivityTracker;
 import de.codebarista.shopware.appserver.service.ShopManagementService;
 import de.codebarista.shopware.appserver.ShopwareApp;
 import de.codebarista.shopware.appserver.service.SignatureService;
@@ -17,6 +23,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -25,6 +32,7 @@ import org.springframework.web.filter.OncePerRequestFilter;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Check the {@code shopware-shop-signature} header.
@@ -35,19 +43,50 @@ import java.util.List;
  */
 public class ShopwareSignatureVerificationFilter extends OncePerRequestFilter {
     private static final Logger LOGGER = LoggerFactory.getLogger(ShopwareSignatureVerificationFilter.class);
+    private static final String SHOP_ID_FIELD = "shopId";
+    private static final String SOURCE_FIELD = "source";
+
+    /**
+     * Name of the request attribute that holds the body decoded by this filter.
+     * See {@link ShopwareRequestBody}.
+     */
+    static final String DECODED_BODY_ATTRIBUTE = ShopwareSignatureVerificationFilter.class.getName() + ".decodedBody";
+
+    /**
+     * Routes whose body is decoded into its DTO by this filter, so that it is parsed only once per request.
+     */
+    private static final Map<String, Class<?>> DECODED_BODY_TYPES = Map.of(
+            "/shopware/api/v1/event", ShopwareEventDto.class,
+            "/shopware/api/v1/action", ActionRequestDto.class,
+            "/shopware/api/v1/registration/confirm", ShopwareAppConfirmationDto.class
+    );
+
     private final ShopManagementService shopManagementService;
     private final SignatureService signatureService;
     private final AppLookupService appLookupService;
     private final ObjectMapper objectMapper;
+    @Nullable private final ShopActivityTracker shopActivityTracker;
 
     public ShopwareSignatureVerificationFilter(ShopManagementService shopManagementService,
                                                SignatureService signatureService,
                                                AppLookupService appLookupService,
                                                ObjectMapper objectMapper) {
+        this(shopManagementService, signatureService, appLookupService, objectMapper, null);
+    }
+
+    /**
+     * @param shopActivityTracker if present, records every shop that has been authenticated
+     */
+    public ShopwareSignatureVerificationFilter(ShopManagementService shopManagementService,
+                                               SignatureService signatureService,
+                                               AppLookupService appLookupService,
+                                               ObjectMapper objectMapper,
+                                               @Nullable ShopActivityTracker shopActivityTracker) {
         this.shopManagementService = shopManagementService;
         this.signatureService = signatureService;
         this.appLookupService = appLookupService;
         this.objectMapper = objectMapper;
+        this.shopActivityTracker = shopActivityTracker;
     }
 
     @Override
@@ -76,11 +115,27 @@ public class ShopwareSignatureVerificationFilter extends OncePerRequestFilter {
             return;
         } else if (HttpMethod.POST.matches(request.getMethod())) {
             // To validate a post request the complete request body must be read.
-            // Wrap the request so that the body can be read multiple times.
+            // Wrap the request so that the body can be read multiple times. The wrapper captures the body once
+            // and the signature check, the shop ID lookup and the @RequestBody binding all read that buffer.
+            // For the App Server routes the body is decoded into its DTO right here and handed to the
+            // controllers via @ShopwareRequestBody, so it is not parsed a second time.
+            // The HMAC cannot be calculated while the body streams in, because the key is the secret of the
+            // shop whose ID is part of the body.
             var reusableRequest = new ReusableRequestWrapper(request);
             String signature = reusableRequest.getHeader(ApiConstants.SHOPWARE_SHOP_SIGNATURE_HEADER);
-            byte[] body = reusableRequest.getInputStream().readAllBytes();
-            String shopId = getShopIdFromBody(body);
+            byte[] body = reusableRequest.getBody();
+            Object decodedBody = decodeBody(reusableRequest, body);
+            String shopId;
+            if (decodedBody != null) {
+                reusableRequest.setAttribute(DECODED_BODY_ATTRIBUTE, decodedBody);
+                // Falls back to the body, e.g. if the source is null, which the required property does not prevent
+                shopId = getShopIdFromDecodedBody(decodedBody);
+                if (shopId == null) {
+                    shopId = getShopIdFromBody(body);
+                }
+            } else {
+                shopId = getShopIdFromBody(body);
+            }
             checkSignatureAndSetAuthentication(reusableRequest, app, shopId, signature, body);
             // Pass the wrapped request to the filter chain!
             filterChain.doFilter(reusableRequest, response);
@@ -102,24 +157,63 @@ public class ShopwareSignatureVerificationFilter extends OncePerRequestFilter {
         return uri.matches(".*\\.(js|css|ttf|woff|woff2|eot|svg|jpg|jpeg|png|gif|ico)$");
     }
 
-    private String getShopIdFromBody(byte[] body) throws IOException {
+    /**
+     * Decodes the body into the DTO of the route, if the route is known.
+     *
+     * @return the decoded DTO or null, if the route is unknown or the body does not match the DTO.
+     * In the latter case, the controller rejects the body when Spring binds it.
+     */
+    private Object decodeBody(HttpServletRequest request, byte[] body) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        Class<?> bodyType = DECODED_BODY_TYPES.get(path);
+        if (bodyType == null) {
+            return null;
+        }
         try {
-            JsonNode node = objectMapper.readTree(body);
-            if (!node.isObject()) {
+            return objectMapper.readValue(body, bodyType);
+        } catch (IOException e) {
+            LOGGER.debug("Could not decode request body of {} into {}: {}", path, bodyType.getSimpleName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private String getShopIdFromDecodedBody(Object decodedBody) {
+        if (decodedBody instanceof ShopwareEventDto event) {
+            return event.source() != null ? event.source().shopId() : null;
+        } else if (decodedBody instanceof ActionRequestDto action) {
+            return action.source() != null ? action.source().shopId() : null;
+        } else if (decodedBody instanceof ShopwareAppConfirmationDto confirmation) {
+            return confirmation.getShopId();
+        }
+        return null;
+    }
+
+    /**
+     * Reads the shop ID from the JSON body without building a tree of the body.
+     * <p>
+     * The parser stops as soon as the shop ID has been found. All other values, e.g. the payload of webhooks,
+     * are skipped without materializing them. The fields may appear in any order.
+     */
+    private String getShopIdFromBody(byte[] body) {
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
                 LOGGER.warn("Request body is not a JSON object");
                 return null;
             }
-            // The registration confirmation request has the shopId property directly in the root object
-            JsonNode rootShopId = node.get("shopId");
-            if (rootShopId != null && rootShopId.isTextual()) {
-                return rootShopId.textValue();
-            }
-            // All other requests have the shopId in the source object
-            JsonNode source = node.get("source");
-            if (source != null && source.isObject()) {
-                JsonNode sourceShopId = source.get("shopId");
-                if (sourceShopId != null && sourceShopId.isTextual()) {
-                    return sourceShopId.textValue();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (SHOP_ID_FIELD.equals(fieldName) && value == JsonToken.VALUE_STRING) {
+                    // The registration confirmation request has the shopId property directly in the root object
+                    return parser.getText();
+                } else if (SOURCE_FIELD.equals(fieldName) && value == JsonToken.START_OBJECT) {
+                    // All other requests have the shopId in the source object
+                    String sourceShopId = getShopIdFromSourceObject(parser);
+                    if (sourceShopId != null) {
+                        return sourceShopId;
+                    }
+                } else {
+                    parser.skipChildren();
                 }
             }
             LOGGER.warn("ShopId not found in request body");
@@ -129,6 +223,22 @@ public class ShopwareSignatureVerificationFilter extends OncePerRequestFilter {
         return null;
     }
 
+    /**
+     * Expects the parser to be positioned at the start of the source object.
+     * Unless the shop ID is found, the parser is positioned at the end of the source object afterward.
+     */
+    private String getShopIdFromSourceObject(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (SHOP_ID_FIELD.equals(fieldName) && value == JsonToken.VALUE_STRING) {
+                return parser.getText();
+            }
+            parser.skipChildren();
+        }
+        return null;
+    }
+
     private byte[] getValidationQueryString(HttpServletRequest request, String signature) {
         String queryString = request.getQueryString();
         if (signature == null || queryString == null) {
@@ -169,7 +279,7 @@ public class ShopwareSignatureVerificationFilter extends OncePerRequestFilter {
             return;
         }
         if (signatureService.verifySignature(message, shop.getShopSecret(), signature)) {
-            setAuthentication(shopId, AppServerWebSecurityConfiguration.ROLE_SHOPWARE_SHOP);
+            setAuthentication(app, shop, AppServerWebSecurityConfiguration.ROLE_SHOPWARE_SHOP);
         } else if (signatureService.verifySignature(message, shop.getPendingShopSecret(), signature)) {
             // If a shop is registered for the first time or if an existing shop is re-registered, the
             // shop secret is pending until it has been confirmed. The confirm endpoint is protected with
@@ -177,7 +287,7 @@ public class ShopwareSignatureVerificationFilter extends OncePerRequestFilter {
             // request body. By the time the controller method runs, Spring has already consumed the
             // InputStream to populate @RequestBody, so the verification must happen here in the filter
             // using the ReusableRequestWrapper.
-            setAuthentication(shopId, AppServerWebSecurityConfiguration.ROLE_SHOPWARE_PENDING_SHOP);
+            setAuthentication(app, shop, AppServerWebSecurityConfiguration.ROLE_SHOPWARE_PENDING_SHOP);
         } else {
             LOGGER.atWarn()
                 .setMessage("Shop authentication failed: Invalid signature.")
@@ -188,11 +298,16 @@ public class ShopwareSignatureVerificationFilter extends OncePerRequestFilter {
         }
     }
 
-    private void setAuthentication(String principal, String authority) {
-        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
-                principal,
+    private void setAuthentication(ShopwareApp app, ShopwareShopEntity shop, String authority) {
+        var authentication = new UsernamePasswordAuthenticationToken(
+                shop.getShopId(),
                 null,
-                List.of(new SimpleGrantedAuthority(authority)))
-        );
+                List.of(new SimpleGrantedAuthority(authority)));
+        // Downstream components get the shop from the authentication instead of loading it again
+        authentication.setDetails(new ResolvedShop(app.getAppKey(), shop));
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        if (shopActivityTracker != null) {
+            shopActivityTracker.recordUsage(shop);
+        }
     }
 }
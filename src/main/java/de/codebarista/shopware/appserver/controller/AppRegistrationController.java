@@ -4,6 +4,7 @@ import de.codebarista.shopware.appserver.api.ApiConstants;
 import de.codebarista.shopware.appserver.api.dto.registration.ShopwareAppConfirmationDto;
 import de.codebarista.shopware.appserver.api.dto.registration.ShopwareAppRegistrationResponseDto;
 import de.codebarista.shopware.appserver.config.AppServerProperties;
+import de.codebarista.shopware.appserver.config.ShopwareRequestBody;
 import de.codebarista.shopware.appserver.model.ShopwareShopEntity;
 import de.codebarista.shopware.appserver.service.AppLookupService;
 import de.codebarista.shopware.appserver.service.ShopManagementService;
@@ -18,7 +19,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.lang.Nullable;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -136,7 +136,7 @@ public class AppRegistrationController {
     @PostMapping("/confirm")
     ResponseEntity<Void> confirm(
             @RequestHeader(HttpHeaders.HOST) String host,
-            @RequestBody ShopwareAppConfirmationDto confirmation) {
+            @ShopwareRequestBody ShopwareAppConfirmationDto confirmation) {
         var app = appLookupService.getAppForHost(host);
         boolean confirmed = shopManagementService.confirmShopRegistration(
                 app, confirmation.getShopId(), confirmation.getShopUrl(),
@@ -4,17 +4,17 @@ import de.codebarista.shopware.appserver.api.ApiConstants;
 import de.codebarista.shopware.appserver.api.dto.action.ActionRequestDto;
 import de.codebarista.shopware.appserver.api.dto.action.ActionResponseDto;
 import de.codebarista.shopware.appserver.api.dto.event.ShopwareEventDto;
+import de.codebarista.shopware.appserver.config.ShopwareRequestBody;
 import de.codebarista.shopware.appserver.service.AppLookupService;
 import de.codebarista.shopware.appserver.ShopwareApp;
+import de.codebarista.shopware.appserver.service.ShopManagementService;
 import de.codebarista.shopware.appserver.service.SignatureService;
-import de.codebarista.shopware.appserver.model.ShopwareShopEntityRepository;
 import de.codebarista.shopware.appserver.util.Locales;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -23,14 +23,14 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/shopware/api/v1")
 public class ShopwareController {
     private final AppLookupService appLookupService;
-    private final ShopwareShopEntityRepository shopwareShopEntityRepository;
+    private final ShopManagementService shopManagementService;
     private final SignatureService signatureService;
 
     public ShopwareController(AppLookupService appLookupService,
-                              ShopwareShopEntityRepository shopwareShopEntityRepository,
+                              ShopManagementService shopManagementService,
                               SignatureService signatureService) {
         this.appLookupService = appLookupService;
-        this.shopwareShopEntityRepository = shopwareShopEntityRepository;
+        this.shopManagementService = shopManagementService;
         this.signatureService = signatureService;
     }
 
@@ -39,9 +39,10 @@ public class ShopwareController {
             @RequestHeader(HttpHeaders.HOST) String host,
             @RequestHeader(value = ApiConstants.SHOPWARE_USER_LANGUAGE_HEADER, required = false) String shopwareUserLanguage,
             @RequestHeader(value = ApiConstants.SHOPWARE_LANGUAGE_ID_HEADER, required = false) String shopwareLanguageId,
-            @RequestBody ShopwareEventDto event) {
+            @ShopwareRequestBody ShopwareEventDto event) {
         ShopwareApp app = appLookupService.getAppForHost(host);
-        final var shop = shopwareShopEntityRepository.findByAppKeyAndShopId(app.getAppKey(), event.source().shopId()).orElse(null);
+        // The shop has already been loaded by the signature verification filter
+        final var shop = shopManagementService.getShopById(app, event.source().shopId()).orElse(null);
         if (shop == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
@@ -54,10 +55,9 @@ public class ShopwareController {
             @RequestHeader(HttpHeaders.HOST) String host,
             @RequestHeader(value = ApiConstants.SHOPWARE_USER_LANGUAGE_HEADER, required = false) String shopwareUserLanguage,
             @RequestHeader(value = ApiConstants.SHOPWARE_LANGUAGE_ID_HEADER, required = false) String shopwareLanguageId,
-            @RequestBody ActionRequestDto action) {
+            @ShopwareRequestBody ActionRequestDto action) {
         ShopwareApp app = appLookupService.getAppForHost(host);
-        final var shop = shopwareShopEntityRepository.findByAppKeyAndShopId(app.getAppKey(), action.source().shopId())
-                .orElse(null);
+        final var shop = shopManagementService.getShopById(app, action.source().shopId()).orElse(null);
         if (shop == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
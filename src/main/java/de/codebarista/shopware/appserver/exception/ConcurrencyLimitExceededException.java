@@ -0,0 +1,15 @@
+package de.codebarista.shopware.appserver.exception;
+
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * Exception thrown when a call to a shop has not been sent, because the app server already has as many calls to
+ * the shop in flight as it allows and no slot became free in time.
+ * <p>
+ * The shop has not seen the call, so this is not a sign that the shop is overloaded.
+ */
+public class ConcurrencyLimitExceededException extends ResourceAccessException {
+    public ConcurrencyLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,88 @@
+package de.codebarista.shopware.appserver.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Admin API access token of a shop, shared by all app server nodes that use the same database.
+ * <p>
+ * The row of a shop is created when its first token is requested. It is only modified by the queries of
+ * {@link ShopwareAccessTokenEntityRepository}, which read and write it without loading the entity.
+ */
+@Entity
+@Table(name = "SHOPWARE_ACCESS_TOKEN")
+public class ShopwareAccessTokenEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "ID", nullable = false)
+    private Long id;
+
+    @Column(name = "APP_KEY", nullable = false)
+    private String appKey;
+
+    @Column(name = "SHOP_ID", nullable = false)
+    private String shopId;
+
+    /**
+     * Encrypted access token, null if no token has been stored yet
+     */
+    @Column(name = "ACCESS_TOKEN")
+    private String accessToken;
+
+    /**
+     * Lifetime of the access token in seconds
+     */
+    @Column(name = "EXPIRES_IN")
+    private Long expiresIn;
+
+    /**
+     * Time at which the access token has been requested, in epoch milliseconds
+     */
+    @Column(name = "ISSUED_AT")
+    private Long issuedAt;
+
+    /**
+     * Node that currently requests a new access token for the shop
+     */
+    @Column(name = "LEASE_OWNER")
+    private String leaseOwner;
+
+    /**
+     * Time at which the lease of the {@link #leaseOwner} ends, in epoch milliseconds
+     */
+    @Column(name = "LEASE_UNTIL", nullable = false)
+    private long leaseUntil;
+
+    ShopwareAccessTokenEntity() {
+    }
+
+    public ShopwareAccessTokenEntity(String appKey, String shopId) {
+        this.appKey = appKey;
+        this.shopId = shopId;
+    }
+
+    /**
+     * Gets the {@link #appKey}.
+     */
+    public String getAppKey() {
+        return appKey;
+    }
+
+    /**
+     * Gets the {@link #shopId}.
+     */
+    public String getShopId() {
+        return shopId;
+    }
+
+    /**
+     * Gets the {@link #accessToken}.
+     */
+    public String getAccessToken() {
+        return accessToken;
+    }
+}
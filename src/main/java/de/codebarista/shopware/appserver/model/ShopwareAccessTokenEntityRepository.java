@@ -0,0 +1,59 @@
+package de.codebarista.shopware.appserver.model;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+public interface ShopwareAccessTokenEntityRepository extends JpaRepository<ShopwareAccessTokenEntity, Long> {
+    /**
+     * Stored access token of a shop. Returned instead of the entity, so that a persistence context that is kept open
+     * for the whole request never returns an outdated token.
+     *
+     * @param accessToken encrypted access token
+     * @param expiresIn   lifetime of the access token in seconds
+     * @param issuedAt    time at which the access token has been requested, in epoch milliseconds
+     */
+    record StoredAccessToken(String accessToken, Long expiresIn, Long issuedAt) {
+    }
+
+    Optional<StoredAccessToken> findByAppKeyAndShopIdAndAccessTokenNotNull(String appKey, String shopId);
+
+    boolean existsByAppKeyAndShopId(String appKey, String shopId);
+
+    @Transactional
+    @Modifying
+    @Query("update ShopwareAccessTokenEntity t set t.leaseOwner = :owner, t.leaseUntil = :leaseUntil "
+            + "where t.appKey = :appKey and t.shopId = :shopId and t.leaseUntil < :now")
+    int acquireLease(@Param("appKey") String appKey, @Param("shopId") String shopId, @Param("owner") String owner,
+                     @Param("leaseUntil") long leaseUntil, @Param("now") long now);
+
+    @Transactional
+    @Modifying
+    @Query("update ShopwareAccessTokenEntity t set t.leaseOwner = null, t.leaseUntil = 0 "
+            + "where t.appKey = :appKey and t.shopId = :shopId and t.leaseOwner = :owner")
+    int releaseLease(@Param("appKey") String appKey, @Param("shopId") String shopId, @Param("owner") String owner);
+
+    @Transactional
+    @Modifying
+    @Query("update ShopwareAccessTokenEntity t set t.accessToken = :accessToken, t.expiresIn = :expiresIn, "
+            + "t.issuedAt = :issuedAt where t.appKey = :appKey and t.shopId = :shopId")
+    int storeAccessToken(@Param("appKey") String appKey, @Param("shopId") String shopId,
+                         @Param("accessToken") String accessToken, @Param("expiresIn") long expiresIn,
+                         @Param("issuedAt") long issuedAt);
+
+    @Transactional
+    @Modifying
+    @Query("update ShopwareAccessTokenEntity t set t.accessToken = null, t.expiresIn = null, t.issuedAt = null "
+            + "where t.appKey = :appKey and t.shopId = :shopId and t.issuedAt = :issuedAt")
+    int discardAccessToken(@Param("appKey") String appKey, @Param("shopId") String shopId,
+                           @Param("issuedAt") long issuedAt);
+
+    @Transactional
+    @Modifying
+    @Query("delete from ShopwareAccessTokenEntity t where t.appKey = :appKey and t.shopId = :shopId")
+    int deleteByShop(@Param("appKey") String appKey, @Param("shopId") String shopId);
+}
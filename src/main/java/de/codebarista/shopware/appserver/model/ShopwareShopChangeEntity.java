@@ -0,0 +1,73 @@
+package de.codebarista.shopware.appserver.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Entry of the shop change feed. One entry is appended for every mutation of a shop,
+ * so that app server nodes sharing the database can invalidate their cached copy of the shop.
+ */
+@Entity
+@Table(name = "SHOPWARE_SHOP_CHANGE")
+public class ShopwareShopChangeEntity {
+    /**
+     * Monotonically increasing version of the change
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "VERSION", nullable = false)
+    private long version;
+
+    @Column(name = "APP_KEY", nullable = false)
+    private String appKey;
+
+    @Column(name = "SHOP_ID", nullable = false)
+    private String shopId;
+
+    /**
+     * Time of the change in epoch milliseconds
+     */
+    @Column(name = "CHANGED_AT", nullable = false)
+    private long changedAt;
+
+    ShopwareShopChangeEntity() {
+    }
+
+    public ShopwareShopChangeEntity(String appKey, String shopId, long changedAt) {
+        this.appKey = appKey;
+        this.shopId = shopId;
+        this.changedAt = changedAt;
+    }
+
+    /**
+     * Gets the {@link #version}.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the {@link #appKey}.
+     */
+    public String getAppKey() {
+        return appKey;
+    }
+
+    /**
+     * Gets the {@link #shopId}.
+     */
+    public String getShopId() {
+        return shopId;
+    }
+
+    /**
+     * Gets the {@link #changedAt}.
+     */
+    public long getChangedAt() {
+        return changedAt;
+    }
+}
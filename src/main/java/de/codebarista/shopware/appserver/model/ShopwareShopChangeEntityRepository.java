@@ -0,0 +1,23 @@
+package de.codebarista.shopware.appserver.model;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface ShopwareShopChangeEntityRepository extends JpaRepository<ShopwareShopChangeEntity, Long> {
+    @Query("select max(c.version) from ShopwareShopChangeEntity c")
+    Optional<Long> findLatestVersion();
+
+    List<ShopwareShopChangeEntity> findByVersionGreaterThanOrChangedAtGreaterThanEqualOrderByVersion(
+            long version, long changedAt);
+
+    @Transactional
+    @Modifying
+    @Query("delete from ShopwareShopChangeEntity c where c.changedAt < :changedAt")
+    int deleteChangedBefore(@Param("changedAt") long changedAt);
+}
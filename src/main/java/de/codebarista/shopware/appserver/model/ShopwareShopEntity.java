@@ -65,7 +65,11 @@ public class ShopwareShopEntity {
     @Column(name = "SHOPWARE_VERSION_LAST_UPDATED_AT")
     private OffsetDateTime shopwareVersionLastUpdatedAt;
 
-    @Column(name = "LAST_USED_AT")
+    /**
+     * Only written by the {@link de.codebarista.shopware.appserver.service.ShopActivityTracker}, so that saving a
+     * shop does not overwrite a newer last usage with the value it has been loaded with
+     */
+    @Column(name = "LAST_USED_AT", updatable = false)
     private OffsetDateTime lastUsedAt;
 
     @Column(name = "PENDING_SHOP_SECRET")
@@ -92,6 +96,33 @@ public class ShopwareShopEntity {
         this.shopSecret = "";
     }
 
+    /**
+     * Creates a detached copy of the shop, so that shared instances, e.g. of the shop cache, are not modified.
+     */
+    public ShopwareShopEntity copy() {
+        var copy = new ShopwareShopEntity();
+        copy.appKey = appKey;
+        copy.id = id;
+        copy.shopId = shopId;
+        copy.shopHost = shopHost;
+        copy.shopRequestUrl = shopRequestUrl;
+        copy.shopSecret = shopSecret;
+        copy.registrationRequestedAt = registrationRequestedAt;
+        copy.registrationConfirmed = registrationConfirmed;
+        copy.shopAdminApiKey = shopAdminApiKey;
+        copy.shopAdminApiSecretKey = shopAdminApiSecretKey;
+        copy.registrationConfirmedAt = registrationConfirmedAt;
+        copy.appVersion = appVersion;
+        copy.appVersionLastUpdatedAt = appVersionLastUpdatedAt;
+        copy.shopwareVersion = shopwareVersion;
+        copy.shopwareVersionLastUpdatedAt = shopwareVersionLastUpdatedAt;
+        copy.lastUsedAt = lastUsedAt;
+        copy.pendingShopSecret = pendingShopSecret;
+        copy.pendingShopUrl = pendingShopUrl;
+        copy.reRegistrationRequiresShopSignature = reRegistrationRequiresShopSignature;
+        return copy;
+    }
+
     public void confirmPendingRegistrationAndAddShopApiSecrets(String apiKey, String apiSecretKey) {
         if (!hasPendingRegistration()) {
             throw new IllegalStateException("No pending registration that can be confirmed.");
@@ -152,7 +183,8 @@ public class ShopwareShopEntity {
     }
 
     /**
-     * Sets the {@link #lastUsedAt}
+     * Sets the {@link #lastUsedAt}. Only persisted when the shop is inserted, saving an existing shop does not
+     * update the column.
      */
     public void setLastUsedAt(OffsetDateTime lastUsedAt) {
         this.lastUsedAt = lastUsedAt;
@@ -1,7 +1,12 @@
 package de.codebarista.shopware.appserver.model;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -9,4 +14,11 @@ public interface ShopwareShopEntityRepository extends JpaRepository<ShopwareShop
     Optional<ShopwareShopEntity> findByAppKeyAndShopId(String appKey, String shopId);
 
     List<ShopwareShopEntity> findByAppKeyAndShopHost(String appKey, String shopHost);
+
+    /**
+     * Must be called within a transaction.
+     */
+    @Modifying
+    @Query("update ShopwareShopEntity s set s.lastUsedAt = :lastUsedAt where s.id in :ids")
+    int updateLastUsedAt(@Param("ids") Collection<Long> ids, @Param("lastUsedAt") OffsetDateTime lastUsedAt);
 }
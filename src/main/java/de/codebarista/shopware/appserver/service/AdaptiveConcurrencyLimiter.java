@@ -0,0 +1,187 @@
+package de.codebarista.shopware.appserver.service;
+
+import de.codebarista.shopware.appserver.exception.ConcurrencyLimitExceededException;
+import jakarta.annotation.Nonnull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of concurrent Admin API calls per shop host and adapts the limit to the shop (AIMD).
+ * <p>
+ * Shops run on very different hardware, so no fixed limit fits all of them. Each host starts with the initial limit:
+ * - Every successful call made while at least half of the limit is in use increases the limit by {@code 1 / limit},
+ *   i.e. by one per round of calls.
+ * - {@code 429 Too Many Requests}, {@code 503 Service Unavailable} and read timeouts halve the limit.
+ * <p>
+ * Other I/O errors, e.g. unknown hosts or refused connections, do not change the limit: they are not caused by the
+ * load on the shop. Neither do calls that have not been sent because a local concurrency limit was exceeded.
+ * <p>
+ * Latency is deliberately not a signal: the endpoints of the Admin API differ too much in their latency, e.g. a large
+ * sync request versus a small notification, to tell overload from a normal mix of calls.
+ * <p>
+ * The limit decreases at most once per round of calls, because the calls that were already in flight when the shop
+ * got overloaded would otherwise decrease it again and again.
+ * <p>
+ * Calls over the limit wait up to the queue timeout for a free slot and then fail with a
+ * {@link ConcurrencyLimitExceededException}. A queue timeout of zero makes them fail immediately.
+ */
+public class AdaptiveConcurrencyLimiter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    private static final double OVERLOAD_BACKOFF = 0.5;
+
+    private final int initialLimit;
+    private final int maxLimit;
+    private final long queueTimeoutNanos;
+    private final Map<String, HostLimit> limitsByHost = new ConcurrentHashMap<>();
+
+    /**
+     * @param initialLimit concurrent calls that are allowed to a host before its limit has adapted
+     * @param maxLimit     upper bound of the limit of each host
+     * @param queueTimeout maximum time a call waits for a free slot, zero to fail immediately
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int maxLimit, Duration queueTimeout) {
+        if (initialLimit < 1 || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("initialLimit must be positive and must not exceed maxLimit");
+        }
+        this.initialLimit = initialLimit;
+        this.maxLimit = maxLimit;
+        this.queueTimeoutNanos = queueTimeout.toNanos();
+    }
+
+    /**
+     * Performs the call to the host of the URI as soon as the limit of the host allows it, and adapts the limit to
+     * the outcome of the call.
+     *
+     * @throws ConcurrencyLimitExceededException if no slot became free within the queue timeout
+     */
+    public <T> T execute(@Nonnull URI uri, @Nonnull Supplier<T> call) {
+        String host = getHost(uri);
+        HostLimit hostLimit = limitsByHost.computeIfAbsent(host, key -> new HostLimit());
+        int inFlight = hostLimit.acquire(host);
+        long start = System.nanoTime();
+        Outcome outcome = Outcome.IGNORED;
+        try {
+            T result = call.get();
+            outcome = Outcome.SUCCESS;
+            return result;
+        } catch (HttpStatusCodeException e) {
+            if (e.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS)
+                    || e.getStatusCode().isSameCodeAs(HttpStatus.SERVICE_UNAVAILABLE)) {
+                outcome = Outcome.OVERLOAD;
+            }
+            throw e;
+        } catch (ConcurrencyLimitExceededException e) {
+            // The call has not reached the shop
+            throw e;
+        } catch (ResourceAccessException e) {
+            if (isReadTimeout(e)) {
+                outcome = Outcome.OVERLOAD;
+            }
+            throw e;
+        } finally {
+            hostLimit.release(host, start, inFlight, outcome);
+        }
+    }
+
+    /**
+     * Returns the current limit of concurrent calls to the host of the URI.
+     */
+    public int getLimit(@Nonnull URI uri) {
+        HostLimit hostLimit = limitsByHost.get(getHost(uri));
+        return hostLimit != null ? hostLimit.getLimit() : initialLimit;
+    }
+
+    private static boolean isReadTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpConnectTimeoutException) {
+                return false;
+            }
+            if (cause instanceof SocketTimeoutException || cause instanceof HttpTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String getHost(URI uri) {
+        return uri.getHost() + ':' + uri.getPort();
+    }
+
+    private enum Outcome {
+        SUCCESS,
+        OVERLOAD,
+        /**
+         * Neither a success nor a sign of overload, e.g. {@code 404 Not Found}
+         */
+        IGNORED
+    }
+
+    private class HostLimit {
+        private double limit = initialLimit;
+        private int inFlight;
+        private long lastDecreaseNanos = System.nanoTime();
+
+        synchronized int getLimit() {
+            return (int) limit;
+        }
+
+        /**
+         * @return the number of calls in flight including this one
+         */
+        synchronized int acquire(String host) {
+            long deadline = System.nanoTime() + queueTimeoutNanos;
+            try {
+                while (inFlight >= (int) limit) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new ConcurrencyLimitExceededException("Too many concurrent Admin API calls to " + host);
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConcurrencyLimitExceededException("Interrupted while waiting for an Admin API call to " + host);
+            }
+            return ++inFlight;
+        }
+
+        synchronized void release(String host, long start, int inFlightAtStart, Outcome outcome) {
+            inFlight--;
+            if (outcome == Outcome.OVERLOAD) {
+                decrease(host, start);
+            } else if (outcome == Outcome.SUCCESS && inFlightAtStart * 2 >= limit) {
+                // Only grow the limit if it is actually used, so that it does not grow without bound while idle
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            notifyAll();
+        }
+
+        private void decrease(String host, long start) {
+            // Calls that were started before the last decrease do not reflect the decreased limit yet
+            if (start - lastDecreaseNanos <= 0) {
+                return;
+            }
+            limit = Math.max(1, limit * OVERLOAD_BACKOFF);
+            lastDecreaseNanos = System.nanoTime();
+            LOGGER.atDebug()
+                    .setMessage("Decreased the concurrency limit of Admin API calls to {} to {}")
+                    .addArgument(host)
+                    .addArgument(() -> (int) limit)
+                    .log();
+        }
+    }
+}
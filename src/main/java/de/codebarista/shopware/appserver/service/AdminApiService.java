@@ -1,49 +1,125 @@
 package de.codebarista.shopware.appserver.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import de.codebarista.shopware.appserver.AdminApi;
 import de.codebarista.shopware.appserver.ShopwareApp;
 import de.codebarista.shopware.appserver.config.AppServerProperties;
+import de.codebarista.shopware.appserver.exception.ConcurrencyLimitExceededException;
 import de.codebarista.shopware.appserver.model.ShopwareShopEntity;
 import de.codebarista.shopware.appserver.service.dto.CreateShopwareNotificationDto;
+import de.codebarista.shopware.appserver.service.dto.search.SearchKeyset;
 import de.codebarista.shopware.appserver.service.dto.search.SearchQuery;
 import de.codebarista.shopware.appserver.service.dto.search.SearchResult;
+import de.codebarista.shopware.appserver.service.dto.search.TotalCountMode;
+import de.codebarista.shopware.appserver.service.dto.sync.IndexingBehavior;
 import de.codebarista.shopware.appserver.service.dto.sync.SyncResult;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.net.URI;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * Service providing high-level Shopware Admin API operations.
  * <p>
  * This service is automatically configured by {@link de.codebarista.shopware.appserver.config.AppServerServiceAutoConfiguration}.
  * Users can override it by defining their own {@code AdminApiService} bean.
+ * <p>
+ * If Shopware rejects the access token with {@code 401 Unauthorized}, e.g. because the integration credentials have
+ * been rotated, the token is evicted from the {@link ShopwareAccessTokenClientService} and the request is retried
+ * once with a new token.
+ * <p>
+ * If enabled, the concurrent calls per shop host are limited by an {@link AdaptiveConcurrencyLimiter}, so that
+ * fan-out jobs do not overload small shops.
  */
 public class AdminApiService implements AdminApi {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdminApiService.class);
     public static final String BEARER_PREFIX = "Bearer ";
     private final RestTemplate restTemplate;
     private final ShopManagementService shopManagementService;
     private final ShopwareAccessTokenClientService shopwareAccessTokenClientService;
     private final boolean sslOnly;
+    private final boolean requestCompressionEnabled;
+    @Nullable private final ShopActivityTracker shopActivityTracker;
+    @Nullable private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final int searchParallelism;
+    private final Map<String, Semaphore> searchPermitsByShop = new ConcurrentHashMap<>();
+    private final Executor executor;
+    private final AppServerProperties appServerProperties;
     private int pageSize = 100;
 
     public AdminApiService(RestTemplate restTemplate,
                            ShopManagementService shopManagementService,
                            ShopwareAccessTokenClientService shopwareAccessTokenClientService,
                            AppServerProperties appServerProperties) {
+        this(restTemplate, shopManagementService, shopwareAccessTokenClientService, appServerProperties, null);
+    }
+
+    /**
+     * @param shopActivityTracker if present, records every shop that is called via the Admin API
+     */
+    public AdminApiService(RestTemplate restTemplate,
+                           ShopManagementService shopManagementService,
+                           ShopwareAccessTokenClientService shopwareAccessTokenClientService,
+                           AppServerProperties appServerProperties,
+                           @Nullable ShopActivityTracker shopActivityTracker) {
         this.restTemplate = restTemplate;
-        restTemplate.setInterceptors(List.of(new HttpRequestResponseLoggingInterceptor()));
         this.shopManagementService = shopManagementService;
         this.shopwareAccessTokenClientService = shopwareAccessTokenClientService;
+        this.shopActivityTracker = shopActivityTracker;
         sslOnly = appServerProperties.isSslOnly();
+        requestCompressionEnabled = appServerProperties.isAdminApiRequestCompressionEnabled();
+        concurrencyLimiter = appServerProperties.isAdminApiAdaptiveConcurrencyEnabled()
+                ? new AdaptiveConcurrencyLimiter(appServerProperties.getAdminApiInitialConcurrency(),
+                        appServerProperties.getAdminApiMaxConcurrency(),
+                        appServerProperties.getAdminApiConcurrencyQueueTimeout())
+                : null;
+        searchParallelism = Math.max(1, appServerProperties.getAdminApiSearchParallelism());
+        executor = createExecutor(appServerProperties.getAdminApiThreads());
+        this.appServerProperties = appServerProperties;
+    }
+
+    /**
+     * Creates the executor that fetches the pages of {@link #searchInParallel} and sends the chunks of
+     * {@link SyncBatcher}s. Idle threads time out, so the executor does not need to be shut down.
+     */
+    private static Executor createExecutor(int threads) {
+        var threadNumber = new AtomicInteger();
+        var executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "shopware-admin-api-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     public void setPageSize(int pageSize) {
@@ -52,6 +128,9 @@ public class AdminApiService implements AdminApi {
 
     public UriComponentsBuilder getShopUrlBuilder(ShopwareApp app, String shopId) {
         ShopwareShopEntity shop = shopManagementService.getShopByIdOrThrow(app, shopId);
+        if (shopActivityTracker != null) {
+            shopActivityTracker.recordUsage(shop);
+        }
         var builder = UriComponentsBuilder.fromUriString(shop.getShopRequestUrl());
         if (sslOnly) {
             builder.scheme("https");
@@ -66,32 +145,152 @@ public class AdminApiService implements AdminApi {
                                        Class<? extends SearchResult<T>> responseType,
                                        String shopwareLanguageId) {
         List<T> results = new ArrayList<>();
-        query.limit(pageSize);
+        SearchQuery pageQuery = query.copy().limit(pageSize);
         for (int currentPageNum = 1; ; currentPageNum++) {
-            query.page(currentPageNum);
-            SearchResult<T> page = postSearch(app, shopId, query, entityName, responseType, shopwareLanguageId);
+            pageQuery.page(currentPageNum);
+            SearchResult<T> page = postSearch(app, shopId, pageQuery, entityName, responseType, shopwareLanguageId);
             results.addAll(page.data());
-            if (page.data().isEmpty() || page.total() < pageSize) {
+            if (page.data().size() < pageSize) {
                 break;
             }
         }
         return results;
     }
 
+    /**
+     * Fetches up to {@code app-server.admin-api-search-parallelism} pages of a shop at a time, shared by all parallel
+     * searches of the shop. A search waits for a free slot only while none of its own pages is pending, so every
+     * search makes progress. The concurrent calls of all searches to the same shop are additionally limited by the
+     * {@link AdaptiveConcurrencyLimiter}, if enabled.
+     */
+    @Override
+    @Nonnull public <T> List<T> searchInParallel(ShopwareApp app,
+                                                 String shopId,
+                                                 String entityName,
+                                                 SearchQuery query,
+                                                 Class<? extends SearchResult<T>> responseType,
+                                                 String shopwareLanguageId) {
+        SearchQuery firstPageQuery = query.copy().limit(pageSize).page(1).totalCountMode(TotalCountMode.EXACT);
+        SearchResult<T> lastPage = postSearch(app, shopId, firstPageQuery, entityName, responseType, shopwareLanguageId);
+        // The total is reported by the shop, so it only sizes the list up to the pages that are fetched at once
+        int expectedSize = (int) Math.min(lastPage.total(), (long) pageSize * searchParallelism);
+        List<T> results = new ArrayList<>(Math.max(expectedSize, lastPage.data().size()));
+        results.addAll(lastPage.data());
+        if (lastPage.data().size() < pageSize) {
+            return results;
+        }
+
+        int pageCount = (int) (((long) lastPage.total() + pageSize - 1) / pageSize);
+        int nextPageNum = 2;
+        Semaphore shopPermits = searchPermitsByShop.computeIfAbsent(app.getAppKey() + ':' + shopId,
+                key -> new Semaphore(searchParallelism));
+        Deque<CompletableFuture<SearchResult<T>>> pendingPages = new ArrayDeque<>();
+        try {
+            while (nextPageNum <= pageCount || !pendingPages.isEmpty()) {
+                while (nextPageNum <= pageCount && pendingPages.size() < searchParallelism
+                        && acquireSearchPermit(shopPermits, pendingPages.isEmpty(), shopId)) {
+                    SearchQuery pageQuery = query.copy().limit(pageSize).page(nextPageNum++)
+                            .totalCountMode(TotalCountMode.NONE);
+                    var page = CompletableFuture.supplyAsync(() -> postSearch(app, shopId, pageQuery,
+                            entityName, responseType, shopwareLanguageId), executor);
+                    page.whenComplete((result, e) -> shopPermits.release());
+                    pendingPages.add(page);
+                }
+                lastPage = pendingPages.remove().join();
+                results.addAll(lastPage.data());
+                if (lastPage.data().size() < pageSize) {
+                    // The total was too high, e.g. because entities have been deleted during the search
+                    pageCount = Math.min(pageCount, nextPageNum - 1);
+                }
+            }
+        } catch (RuntimeException e) {
+            pendingPages.forEach(page -> page.cancel(false));
+            if (e instanceof CompletionException && e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+
+        // Entities created during the search push entities beyond the total determined by the first page.
+        // Pages up to nextPageNum - 1 have already been fetched, even if the total was too low.
+        for (int currentPageNum = Math.max(pageCount, nextPageNum - 1) + 1; lastPage.data().size() >= pageSize;
+             currentPageNum++) {
+            SearchQuery pageQuery = query.copy().limit(pageSize).page(currentPageNum)
+                    .totalCountMode(TotalCountMode.NONE);
+            lastPage = postSearch(app, shopId, pageQuery, entityName, responseType, shopwareLanguageId);
+            results.addAll(lastPage.data());
+        }
+        return results;
+    }
+
+    /**
+     * Takes one of the slots that limit the pages fetched from the shop at a time.
+     *
+     * @param wait whether to wait for a free slot instead of giving up immediately
+     * @return whether a slot has been taken
+     */
+    private static boolean acquireSearchPermit(Semaphore shopPermits, boolean wait, String shopId) {
+        if (!wait) {
+            return shopPermits.tryAcquire();
+        }
+        try {
+            shopPermits.acquire();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrencyLimitExceededException("Interrupted while waiting to search shop " + shopId);
+        }
+    }
+
+    /**
+     * Prefetched pages are fetched by the executor of {@link #searchInParallel}.
+     */
+    @Override
+    @Nonnull public <T> Stream<T> searchStream(ShopwareApp app,
+                                               String shopId,
+                                               String entityName,
+                                               SearchQuery query,
+                                               Class<? extends SearchResult<T>> responseType,
+                                               String shopwareLanguageId,
+                                               boolean prefetchNextPage) {
+        SearchQuery searchQuery = query.copy();
+        int size = pageSize;
+        return new LazySearchIterator<T>(
+                (pageNum, lastEntity) -> postSearch(app, shopId, searchQuery.copy().limit(size).page(pageNum),
+                        entityName, responseType, shopwareLanguageId),
+                size, prefetchNextPage ? executor : null)
+                .stream();
+    }
+
+    /**
+     * Prefetched pages are fetched by the executor of {@link #searchInParallel}.
+     */
+    @Override
+    @Nonnull public <T> Stream<T> searchStream(ShopwareApp app,
+                                               String shopId,
+                                               String entityName,
+                                               SearchQuery query,
+                                               Class<? extends SearchResult<T>> responseType,
+                                               String shopwareLanguageId,
+                                               SearchKeyset<T> keyset,
+                                               boolean prefetchNextPage) {
+        SearchQuery searchQuery = query.copy();
+        int size = pageSize;
+        // Fails before the first request if the query has sortings
+        keyset.pageQuery(searchQuery, size, null);
+        return new LazySearchIterator<T>(
+                (pageNum, lastEntity) -> postSearch(app, shopId, keyset.pageQuery(searchQuery, size, lastEntity),
+                        entityName, responseType, shopwareLanguageId),
+                size, prefetchNextPage ? executor : null)
+                .stream();
+    }
+
     public <T> SearchResult<T> postSearch(ShopwareApp app,
                                           String shopId,
                                           SearchQuery searchQuery,
                                           String entityName,
                                           Class<? extends SearchResult<T>> responseType,
                                           String shopwareLanguageId) {
-        var headers = getTokenAndSetAuthorizationHeader(app, shopId);
-        headers.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
-        // set this header to get a response from Shopware where all data is included in top DTO
-        headers.add(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE);
-        if (shopwareLanguageId != null) {
-            headers.add("sw-language-id", shopwareLanguageId);
-        }
-
         // Replace underscores with dashes to prevent common API lookup failures.
         // When developers copy entity names from Shopware code (which uses
         // underscore_naming), those names won't work with the admin API that
@@ -101,12 +300,31 @@ public class AdminApiService implements AdminApi {
         entityName = entityName.replace('_', '-');
 
         URI url = getShopUrlBuilder(app, shopId).pathSegment("api", "search", entityName).build().toUri();
-        return postForObject(url, new HttpEntity<>(searchQuery, headers), responseType);
+        return withAccessToken(app, shopId, headers -> {
+            headers.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+            // set this header to get a response from Shopware where all data is included in top DTO
+            headers.add(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE);
+            if (shopwareLanguageId != null) {
+                headers.add("sw-language-id", shopwareLanguageId);
+            }
+            return postForObject(url, new HttpEntity<>(searchQuery, headers), responseType);
+        });
     }
 
+    /**
+     * Sends an authorized GET request to the shop and retries it once with a new access token if the current one
+     * is rejected.
+     */
+    @Nonnull public <T> T getForObject(ShopwareApp app, String shopId, URI url, Class<T> responseType) {
+        return withAccessToken(app, shopId, headers -> getForObject(url, new HttpEntity<>(headers), responseType));
+    }
 
+    /**
+     * Sends the GET request as it is. Use {@link #getForObject(ShopwareApp, String, URI, Class)} to recover from
+     * rejected access tokens.
+     */
     @Nonnull public <T> T getForObject(URI url, HttpEntity<?> request, Class<T> responseType) {
-        var response = restTemplate.exchange(url, HttpMethod.GET, request, responseType);
+        var response = limited(url, () -> restTemplate.exchange(url, HttpMethod.GET, request, responseType));
         var object = response.getBody();
         if (object == null) {
             throw new RestClientException(String.format("Missing response body on GET request for \"%s\": %s ", url, request));
@@ -140,16 +358,20 @@ public class AdminApiService implements AdminApi {
 
     public <T> void postEntity(ShopwareApp app, String shopId, String entity, T requestDto) {
         URI url = getShopUrlBuilder(app, shopId).pathSegment("api", entity).build().toUri();
-        var request = new HttpEntity<>(requestDto, getTokenAndSetAuthorizationHeader(app, shopId));
-        restTemplate.postForObject(url, request, Object.class);
+        withAccessToken(app, shopId, headers -> {
+            addRequestCompressionHeader(headers);
+            var request = new HttpEntity<>(requestDto, headers);
+            return limited(url, () -> restTemplate.postForObject(url, request, Object.class));
+        });
     }
 
     @Override
     @Nonnull public <T> T script(ShopwareApp app, String shopId, String hookName, Object requestBody, Class<T> responseClass) {
         var url = getShopUrlBuilder(app, shopId).pathSegment("api", "script", hookName).build().toUri();
-        var headers = getTokenAndSetAuthorizationHeader(app, shopId);
-        headers.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
-        return postForObject(url, new HttpEntity<>(requestBody, headers), responseClass);
+        return withAccessToken(app, shopId, headers -> {
+            headers.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+            return postForObject(url, new HttpEntity<>(requestBody, headers), responseClass);
+        });
     }
 
     @Override
@@ -159,22 +381,104 @@ public class AdminApiService implements AdminApi {
 
     @Override
     @Nonnull public <T> T sync(ShopwareApp app, String shopId, Object requestBody, Class<T> responseClass) {
+        return sync(app, shopId, requestBody, responseClass, IndexingBehavior.USE_QUEUE_INDEXING);
+    }
+
+    @Override
+    @Nonnull public <T> T sync(ShopwareApp app, String shopId, Object requestBody, Class<T> responseClass,
+                               IndexingBehavior indexingBehavior) {
         var url = getShopUrlBuilder(app, shopId).pathSegment("api", "_action", "sync").build().toUri();
-        var headers = getTokenAndSetAuthorizationHeader(app, shopId);
-        headers.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
-        headers.add("single-operation", "1");
-        headers.add("indexing-behavior", "use-queue-indexing");
-        return postForObject(url, new HttpEntity<>(requestBody, headers), responseClass);
+        return withAccessToken(app, shopId, headers -> {
+            headers.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+            headers.add("single-operation", "1");
+            headers.add("indexing-behavior", indexingBehavior.getHeaderValue());
+            addRequestCompressionHeader(headers);
+            return postForObject(url, new HttpEntity<>(requestBody, headers), responseClass);
+        });
+    }
+
+    /**
+     * Dispatches a full indexing of the shop via {@code POST /api/_action/index}.
+     */
+    @Override
+    public void triggerIndexing(ShopwareApp app, String shopId) {
+        var url = getShopUrlBuilder(app, shopId).pathSegment("api", "_action", "index").build().toUri();
+        withAccessToken(app, shopId, headers -> {
+            headers.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+            var request = new HttpEntity<>(Map.of(), headers);
+            return limited(url, () -> restTemplate.postForObject(url, request, Object.class));
+        });
+    }
+
+    /**
+     * Creates a batcher with the {@code app-server.admin-api-sync-*} defaults, whose chunks are sent by the executor
+     * of {@link #searchInParallel}. The payloads are serialized with the object mapper of the RestTemplate.
+     */
+    @Override
+    @Nonnull public SyncBatcher syncBatcher(ShopwareApp app, String shopId) {
+        ObjectMapper objectMapper = restTemplate.getMessageConverters().stream()
+                .filter(MappingJackson2HttpMessageConverter.class::isInstance)
+                .map(converter -> ((MappingJackson2HttpMessageConverter) converter).getObjectMapper())
+                .findFirst()
+                .orElseGet(ObjectMapper::new);
+        return new SyncBatcher(this, app, shopId, objectMapper, executor)
+                .maxOperationsPerChunk(appServerProperties.getAdminApiSyncChunkOperations())
+                .maxBytesPerChunk(appServerProperties.getAdminApiSyncChunkSize().toBytes())
+                .flushInterval(appServerProperties.getAdminApiSyncFlushInterval())
+                .parallelism(appServerProperties.getAdminApiSyncParallelism());
     }
 
     @Nonnull public <T> T postForObject(URI url, HttpEntity<?> request, Class<T> responseClass) {
-        T rsp = restTemplate.postForObject(url, request, responseClass);
+        T rsp = limited(url, () -> restTemplate.postForObject(url, request, responseClass));
         if (rsp == null) {
             throw new RestClientException(String.format("Missing response body on POST request for %s: %s", url, request));
         }
         return rsp;
     }
 
+    /**
+     * Performs the call within the concurrency limit of the shop host, if enabled.
+     */
+    private <T> T limited(URI url, Supplier<T> call) {
+        return concurrencyLimiter != null ? concurrencyLimiter.execute(url, call) : call.get();
+    }
+
+    /**
+     * Requests the body to be sent gzip compressed, if enabled. The body is compressed by the request factory of the
+     * {@code shopwareRestTemplate}.
+     */
+    private void addRequestCompressionHeader(HttpHeaders headers) {
+        if (requestCompressionEnabled) {
+            headers.add(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+    }
+
+    /**
+     * Sends the request with the headers returned by {@link #getTokenAndSetAuthorizationHeader(ShopwareApp, String)}.
+     * If Shopware answers with {@code 401 Unauthorized}, the rejected token is evicted and the request is sent once
+     * more with a new token. A second {@code 401} is thrown to the caller.
+     *
+     * @param request sends the request with the given authorization headers; called at most twice
+     */
+    private <T> T withAccessToken(ShopwareApp app, String shopId, Function<HttpHeaders, T> request) {
+        HttpHeaders headers = getTokenAndSetAuthorizationHeader(app, shopId);
+        String authorization = headers.getFirst(HttpHeaders.AUTHORIZATION);
+        try {
+            return request.apply(headers);
+        } catch (HttpClientErrorException.Unauthorized e) {
+            if (authorization == null || !authorization.startsWith(BEARER_PREFIX)) {
+                throw e;
+            }
+            LOGGER.atInfo()
+                    .setMessage("Access token of shop {} has been rejected, retrying with a new token")
+                    .addArgument(shopId)
+                    .log();
+            shopwareAccessTokenClientService.evictRejectedAccessToken(app, shopId,
+                    authorization.substring(BEARER_PREFIX.length()));
+            return request.apply(getTokenAndSetAuthorizationHeader(app, shopId));
+        }
+    }
+
     public HttpHeaders getTokenAndSetAuthorizationHeader(ShopwareApp app, String shopId) {
         String accessToken = shopwareAccessTokenClientService.getAccessToken(app, shopId);
         var headers = new HttpHeaders();
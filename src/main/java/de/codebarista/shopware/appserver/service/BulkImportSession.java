@@ -0,0 +1,183 @@
+package de.codebarista.shopware.appserver.service;
+
+import de.codebarista.shopware.appserver.service.dto.sync.IndexingBehavior;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * Imports a large number of operations into a shop and updates the indexes only once at the end.
+ * <p>
+ * The operations are sent in chunks by a {@link SyncBatcher} with {@link IndexingBehavior#DISABLE_INDEXING}, so
+ * Shopware does not dispatch indexer messages for every chunk. When the session is completed, a single indexing run
+ * is triggered. Until then, the imported entities are stored but e.g. not found by the storefront search.
+ * <pre>{@code
+ * try (BulkImportSession session = adminApi.bulkImport(app, shopId)) {
+ *     products.forEach(product -> session.upsert("product", product));
+ *     BulkImportSession.Result result = session.complete();
+ * }
+ * }</pre>
+ * The indexing is triggered even if some chunks failed, because the other chunks have been applied without indexing.
+ * <p>
+ * Without an indexing trigger, the chunks are synced with the indexing behavior of the batcher and no final
+ * indexing run is made, e.g. for {@link de.codebarista.shopware.appserver.AdminApi} implementations that cannot
+ * trigger an indexing.
+ */
+public class BulkImportSession implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkImportSession.class);
+
+    /**
+     * Outcome of a bulk import.
+     *
+     * @param sync              outcome of the sync chunks
+     * @param indexed           whether the indexing has been triggered, false if no operations have been sent or
+     *                          the session has no indexing trigger
+     * @param indexingDuration  time the indexing request took
+     * @param indexingException the exception of the failed indexing request, or null
+     */
+    public record Result(SyncBatcher.Result sync, boolean indexed, Duration indexingDuration,
+                         @Nullable RuntimeException indexingException) {
+        public boolean successful() {
+            return sync.successful() && indexingException == null;
+        }
+    }
+
+    private final SyncBatcher syncBatcher;
+    @Nullable private final Runnable indexing;
+    private final String shopId;
+    @Nullable private Result result;
+
+    /**
+     * @param syncBatcher sends the operations, must not have been used yet; its indexing is disabled if there is
+     *                    an indexing trigger
+     * @param indexing    triggers the indexing of the shop, e.g. {@code () -> adminApi.triggerIndexing(app, shopId)},
+     *                    or null to keep the indexing behavior of the batcher and skip the final indexing run
+     * @param shopId      the Shopware shop ID, used for logging
+     */
+    public BulkImportSession(SyncBatcher syncBatcher, @Nullable Runnable indexing, String shopId) {
+        this.syncBatcher = indexing != null
+                ? syncBatcher.indexingBehavior(IndexingBehavior.DISABLE_INDEXING)
+                : syncBatcher;
+        this.indexing = indexing;
+        this.shopId = shopId;
+    }
+
+    /**
+     * Sets a listener that is notified after each chunk has been sent, see
+     * {@link SyncBatcher#progressListener(Consumer)}. Must be set before the first operation is added.
+     *
+     * @return this BulkImportSession for method chaining
+     */
+    public BulkImportSession progressListener(@Nullable Consumer<SyncBatcher.Progress> progressListener) {
+        syncBatcher.progressListener(progressListener);
+        return this;
+    }
+
+    /**
+     * Adds an upsert of an entity instance.
+     *
+     * @param entity  the entity name (e.g., "product")
+     * @param payload the entity data, serialized to JSON
+     * @return this BulkImportSession for method chaining
+     */
+    public BulkImportSession upsert(@Nonnull String entity, @Nonnull Object payload) {
+        syncBatcher.upsert(entity, payload);
+        return this;
+    }
+
+    /**
+     * Adds a delete of an entity instance.
+     *
+     * @param entity     the entity name (e.g., "product")
+     * @param primaryKey the primary key of the instance, e.g. {@code Map.of("id", id)}
+     * @return this BulkImportSession for method chaining
+     */
+    public BulkImportSession delete(@Nonnull String entity, @Nonnull Object primaryKey) {
+        syncBatcher.delete(entity, primaryKey);
+        return this;
+    }
+
+    /**
+     * Adds a delete of the entity instance with the given ID.
+     *
+     * @param entity the entity name (e.g., "product")
+     * @param id     the ID of the instance
+     * @return this BulkImportSession for method chaining
+     */
+    public BulkImportSession deleteById(@Nonnull String entity, @Nonnull String id) {
+        syncBatcher.deleteById(entity, id);
+        return this;
+    }
+
+    /**
+     * Returns the progress of the sync chunks. Can be called at any time from any thread.
+     */
+    public SyncBatcher.Progress getProgress() {
+        return syncBatcher.getProgress();
+    }
+
+    /**
+     * Waits until all chunks have been sent and then triggers the indexing. No operations can be added afterwards.
+     *
+     * @return the outcome of the import
+     */
+    public synchronized Result complete() {
+        if (result != null) {
+            return result;
+        }
+        SyncBatcher.Result syncResult = syncBatcher.complete();
+        if (syncResult.operations() == 0 || indexing == null) {
+            result = new Result(syncResult, false, Duration.ZERO, null);
+            return result;
+        }
+        RuntimeException indexingException = null;
+        long start = System.nanoTime();
+        try {
+            indexing.run();
+        } catch (RuntimeException e) {
+            LOGGER.atWarn()
+                    .setMessage("Indexing of shop {} after a bulk import failed")
+                    .addArgument(shopId)
+                    .setCause(e)
+                    .log();
+            indexingException = e;
+        }
+        Duration indexingDuration = Duration.ofNanos(System.nanoTime() - start);
+        LOGGER.atInfo()
+                .setMessage("Bulk import of {} operations in {} chunks into shop {} finished, indexing took {} ms")
+                .addArgument(syncResult.operations())
+                .addArgument(syncResult.chunks())
+                .addArgument(shopId)
+                .addArgument(indexingDuration::toMillis)
+                .log();
+        result = new Result(syncResult, true, indexingDuration, indexingException);
+        return result;
+    }
+
+    /**
+     * {@link #complete() Completes} the session, if that has not been done yet. Failed chunks are logged.
+     */
+    @Override
+    public void close() {
+        boolean completed;
+        synchronized (this) {
+            completed = result != null;
+        }
+        if (completed) {
+            return;
+        }
+        Result outcome = complete();
+        if (!outcome.sync().successful()) {
+            LOGGER.atWarn()
+                    .setMessage("{} of {} sync chunks of the bulk import into shop {} failed")
+                    .addArgument(outcome.sync().failedChunks().size())
+                    .addArgument(outcome.sync().chunks())
+                    .addArgument(shopId)
+                    .log();
+        }
+    }
+}
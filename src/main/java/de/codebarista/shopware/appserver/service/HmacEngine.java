@@ -0,0 +1,136 @@
+package de.codebarista.shopware.appserver.service;
+
+import de.codebarista.shopware.appserver.exception.SignatureInitializationException;
+import jakarta.annotation.Nonnull;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Keyed HMAC-SHA256 engine that keeps initialized {@link Mac} instances per secret.
+ * <p>
+ * Looking up the HMAC provider and scheduling the key for every request is expensive compared to the
+ * actual MAC calculation of a small webhook body. This engine keeps a small LRU cache of initialized
+ * {@code Mac} instances per thread, so a {@code Mac} is never shared between threads. The cache of a thread is
+ * only locked by its own thread, except during an eviction, so the lock is practically uncontended.
+ * <p>
+ * When a secret is rotated or a shop is deleted, {@link #evict(String)} must be called. It removes the instances
+ * of the secret from the caches of all threads immediately, including threads that are idle.
+ */
+public class HmacEngine {
+    public static final String ALGORITHM = "HmacSHA256";
+    public static final int DEFAULT_MAX_KEYS_PER_THREAD = 32;
+
+    private final int maxKeysPerThread;
+    /**
+     * The caches of all threads, so that evictions reach them. Caches of terminated threads are garbage collected.
+     */
+    private final Set<KeyCache> allCaches = Collections.newSetFromMap(new WeakHashMap<>());
+    private final ThreadLocal<KeyCache> caches;
+
+    public HmacEngine() {
+        this(DEFAULT_MAX_KEYS_PER_THREAD);
+    }
+
+    /**
+     * @param maxKeysPerThread maximum number of initialized {@code Mac} instances kept per thread
+     */
+    public HmacEngine(int maxKeysPerThread) {
+        if (maxKeysPerThread < 1) {
+            throw new IllegalArgumentException("maxKeysPerThread must be positive");
+        }
+        this.maxKeysPerThread = maxKeysPerThread;
+        this.caches = ThreadLocal.withInitial(() -> {
+            KeyCache cache = new KeyCache(this.maxKeysPerThread);
+            synchronized (allCaches) {
+                allCaches.add(cache);
+            }
+            return cache;
+        });
+    }
+
+    /**
+     * Calculates the HMAC of the data with the UTF-8 encoded secret.
+     *
+     * @throws IllegalArgumentException if the secret is not a valid HMAC key, e.g. if it is empty
+     */
+    @Nonnull public byte[] sign(@Nonnull String secret, @Nonnull byte[] data) {
+        return mac(secret).doFinal(data);
+    }
+
+    /**
+     * Returns the initialized {@code Mac} of the current thread for the secret.
+     * <p>
+     * The returned instance is confined to the calling thread and must not be handed to other threads.
+     * Callers must finish every calculation with {@link Mac#doFinal()} (or {@link Mac#reset()}), so that the
+     * instance can be reused by the next caller.
+     *
+     * @throws IllegalArgumentException if the secret is not a valid HMAC key, e.g. if it is empty
+     */
+    @Nonnull public Mac mac(@Nonnull String secret) {
+        KeyCache cache = caches.get();
+        synchronized (cache) {
+            Mac mac = cache.macs.get(secret);
+            if (mac == null) {
+                mac = newMac(secret);
+                cache.macs.put(secret, mac);
+            }
+            return mac;
+        }
+    }
+
+    /**
+     * Drops the cached {@code Mac} instances of the secret from the caches of all threads.
+     * <p>
+     * Call this when a secret is no longer valid, i.e. when it has been rotated or the shop has been deleted.
+     * Instances of other secrets stay cached. A thread that is calculating a MAC with an evicted instance
+     * finishes it, the next call creates a new instance.
+     */
+    public void evict(@Nonnull String secret) {
+        synchronized (allCaches) {
+            for (KeyCache cache : allCaches) {
+                synchronized (cache) {
+                    cache.macs.remove(secret);
+                }
+            }
+        }
+    }
+
+    private static Mac newMac(String secret) {
+        // SecretKeySpec throws an IllegalArgumentException for an empty key
+        SecretKeySpec keySpec = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(keySpec);
+            return mac;
+        } catch (NoSuchAlgorithmException e) {
+            throw new SignatureInitializationException("Could not initialize HMAC function " + ALGORITHM, e);
+        } catch (InvalidKeyException e) {
+            throw new IllegalArgumentException("Invalid HMAC key", e);
+        }
+    }
+
+    /**
+     * LRU cache of a single thread. Compared by identity, so that it can be tracked in a set while it changes.
+     */
+    private static class KeyCache {
+        private final Map<String, Mac> macs;
+
+        KeyCache(int maxKeys) {
+            macs = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Mac> eldest) {
+                    return size() > maxKeys;
+                }
+            };
+        }
+    }
+}
@@ -2,28 +2,105 @@ package de.codebarista.shopware.appserver.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.lang.NonNull;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
+/**
+ * Logs the requests to shops and their responses with the {@code AdminApiHTTPClient} logger at debug level.
+ * <p>
+ * Nothing is captured if the logger is not enabled for debug or the request is not sampled. Of the bodies, only the
+ * first {@code maxLoggedBytes} are logged. Credentials in headers and JSON bodies are redacted.
+ * <p>
+ * The response body is not read by the interceptor. Instead, the bytes are captured while the caller reads the body,
+ * and logged when the response is closed.
+ */
 public class HttpRequestResponseLoggingInterceptor implements ClientHttpRequestInterceptor {
     private static final Logger logger = LoggerFactory.getLogger("AdminApiHTTPClient");
 
+    private static final String REDACTED = "***";
+    private static final Set<String> REDACTED_HEADERS = Set.of(
+            HttpHeaders.AUTHORIZATION.toLowerCase(), HttpHeaders.COOKIE.toLowerCase(),
+            HttpHeaders.SET_COOKIE.toLowerCase(), HttpHeaders.PROXY_AUTHORIZATION.toLowerCase());
+    /**
+     * JSON properties that hold credentials, e.g. in the OAuth token request and response.
+     * Also matches values that are cut off at the end of a truncated body.
+     */
+    private static final Pattern SECRET_PROPERTIES = Pattern.compile(
+            "(\"(?:client_secret|access_token|refresh_token|password|secret|shopSecret|apiKey|secretKey)\"\\s*:\\s*)"
+                    + "\"(?:[^\"\\\\]|\\\\.)*(?:\"|$)");
+
+    private final int maxLoggedBytes;
+    private final double sampleRate;
+    private final Set<String> sampledHosts;
+
+    /**
+     * Logs every request with up to 4 KiB of each body.
+     */
+    public HttpRequestResponseLoggingInterceptor() {
+        this(4096, 1.0, List.of());
+    }
+
+    /**
+     * @param maxLoggedBytes maximum number of bytes that are logged of each request and response body
+     * @param sampleRate     fraction of the requests that are logged, between 0 and 1
+     * @param sampledHosts   shop hosts whose requests are logged, all hosts if empty
+     */
+    public HttpRequestResponseLoggingInterceptor(int maxLoggedBytes, double sampleRate,
+                                                 Collection<String> sampledHosts) {
+        if (maxLoggedBytes < 0) {
+            throw new IllegalArgumentException("maxLoggedBytes must not be negative");
+        }
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("sampleRate must be between 0 and 1");
+        }
+        this.maxLoggedBytes = maxLoggedBytes;
+        this.sampleRate = sampleRate;
+        this.sampledHosts = sampledHosts.stream().map(String::toLowerCase).collect(Collectors.toUnmodifiableSet());
+    }
+
     @Override
     public @NonNull ClientHttpResponse intercept(@NonNull HttpRequest request,
-                                        @NonNull byte[] body,
-                                        @NonNull ClientHttpRequestExecution execution) throws IOException {
+                                                 @NonNull byte[] body,
+                                                 @NonNull ClientHttpRequestExecution execution) throws IOException {
+        if (!logger.isDebugEnabled() || !isSampled(request)) {
+            return execution.execute(request, body);
+        }
         logRequest(request, body);
         ClientHttpResponse response = execution.execute(request, body);
-        logResponse(response);
-        return response;
+        logger.atDebug()
+                .setMessage("Response")
+                .addKeyValue("URI: {}", request.getURI())
+                .addKeyValue("Status Code: {}", response.getStatusCode())
+                .addKeyValue("Headers: {}", redact(response.getHeaders()))
+                .log();
+        return new LoggingResponse(response, request);
+    }
+
+    private boolean isSampled(HttpRequest request) {
+        if (!sampledHosts.isEmpty()) {
+            String host = request.getURI().getHost();
+            if (host == null || !sampledHosts.contains(host.toLowerCase())) {
+                return false;
+            }
+        }
+        return sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
     }
 
     private void logRequest(HttpRequest request, byte[] body) {
@@ -31,23 +108,113 @@ public class HttpRequestResponseLoggingInterceptor implements ClientHttpRequestI
                 .setMessage("Request")
                 .addKeyValue("URI: {}", request.getURI())
                 .addKeyValue("Method: {}", request.getMethod())
-                .addKeyValue("Headers: {}", request.getHeaders())
-                .addKeyValue("Body: {}", new String(body, StandardCharsets.UTF_8))
+                .addKeyValue("Headers: {}", redact(request.getHeaders()))
+                .addKeyValue("Body: {}", toLoggedBody(body, Math.min(body.length, maxLoggedBytes), body.length))
                 .log();
     }
 
-    private void logResponse(ClientHttpResponse response) throws java.io.IOException {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
-        StringBuilder body = new StringBuilder();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            body.append(line).append('\n');
+    private static HttpHeaders redact(HttpHeaders headers) {
+        var redactedHeaders = new HttpHeaders();
+        headers.forEach((name, values) -> redactedHeaders.put(name,
+                REDACTED_HEADERS.contains(name.toLowerCase()) ? List.of(REDACTED) : values));
+        return redactedHeaders;
+    }
+
+    private static String toLoggedBody(byte[] body, int loggedLength, long totalLength) {
+        String loggedBody = SECRET_PROPERTIES.matcher(new String(body, 0, loggedLength, StandardCharsets.UTF_8))
+                .replaceAll("$1\"" + REDACTED + "\"");
+        if (totalLength > loggedLength) {
+            return loggedBody + "... (" + totalLength + " bytes)";
+        }
+        return loggedBody;
+    }
+
+    /**
+     * Captures the first bytes of the body while the caller reads it, and logs them when the response is closed
+     */
+    private class LoggingResponse implements ClientHttpResponse {
+        private final ClientHttpResponse response;
+        private final HttpRequest request;
+        private final ByteArrayOutputStream capturedBody = new ByteArrayOutputStream();
+        private long bodyLength;
+        private InputStream body;
+        private boolean logged;
+
+        LoggingResponse(ClientHttpResponse response, HttpRequest request) {
+            this.response = response;
+            this.request = request;
+        }
+
+        @Override
+        public @NonNull HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public @NonNull String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public @NonNull HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public @NonNull InputStream getBody() throws IOException {
+            if (body == null) {
+                body = new CapturingInputStream(response.getBody());
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            try {
+                response.close();
+            } finally {
+                if (!logged) {
+                    logged = true;
+                    logger.atDebug()
+                            .setMessage("Response body")
+                            .addKeyValue("URI: {}", request.getURI())
+                            .addKeyValue("Body: {}", toLoggedBody(capturedBody.toByteArray(), capturedBody.size(),
+                                    bodyLength))
+                            .log();
+                }
+            }
+        }
+
+        private class CapturingInputStream extends FilterInputStream {
+            CapturingInputStream(InputStream in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1) {
+                    capture(new byte[]{(byte) b}, 0, 1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+                int read = super.read(buffer, offset, length);
+                if (read > 0) {
+                    capture(buffer, offset, read);
+                }
+                return read;
+            }
+
+            private void capture(byte[] buffer, int offset, int length) {
+                bodyLength += length;
+                int capturedLength = Math.min(length, maxLoggedBytes - capturedBody.size());
+                if (capturedLength > 0) {
+                    capturedBody.write(buffer, offset, capturedLength);
+                }
+            }
         }
-        logger.atDebug()
-                .setMessage("Response")
-                .addKeyValue("Status Code: {}", response.getStatusCode())
-                .addKeyValue("Headers: {}", response.getHeaders())
-                .addKeyValue("Body: {}", body)
-                .log();
     }
 }
@@ -0,0 +1,123 @@
+package de.codebarista.shopware.appserver.service;
+
+import de.codebarista.shopware.appserver.service.dto.search.SearchResult;
+import jakarta.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over the entities of a search page by page. The next page is only fetched when the entities of the
+ * current page have been consumed, so at most one page (two with prefetching) is held in memory.
+ * <p>
+ * A page with fewer entities than the page size is the last page. Pages are either addressed by their number or, with
+ * keyset pagination, by the last entity of the previous page.
+ *
+ * @param <T> java type of the entity
+ */
+class LazySearchIterator<T> implements Iterator<T>, AutoCloseable {
+    @FunctionalInterface
+    interface PageFetcher<T> {
+        /**
+         * @param pageNum    number of the page, starting at 1
+         * @param lastEntity last entity of the previous page, null for the first page
+         */
+        SearchResult<T> fetch(int pageNum, @Nullable T lastEntity);
+    }
+
+    private final PageFetcher<T> pageFetcher;
+    private final int pageSize;
+    @Nullable private final Executor prefetchExecutor;
+    private Iterator<T> currentPage = Collections.emptyIterator();
+    private int nextPageNum = 1;
+    @Nullable private T lastEntity;
+    private boolean lastPageFetched;
+    @Nullable private CompletableFuture<SearchResult<T>> prefetchedPage;
+
+    /**
+     * @param pageFetcher      fetches the next page
+     * @param pageSize         number of entities per page
+     * @param prefetchExecutor if present, fetches the next page while the current one is consumed
+     */
+    LazySearchIterator(PageFetcher<T> pageFetcher, int pageSize, @Nullable Executor prefetchExecutor) {
+        this.pageFetcher = pageFetcher;
+        this.pageSize = pageSize;
+        this.prefetchExecutor = prefetchExecutor;
+    }
+
+    /**
+     * Returns a sequential stream of the entities that stops fetching pages when it is closed.
+     */
+    Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+                .onClose(this::close);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!currentPage.hasNext()) {
+            if (lastPageFetched) {
+                return false;
+            }
+            List<T> data = nextPage().data();
+            currentPage = data.iterator();
+            lastPageFetched = data.size() < pageSize;
+            if (!data.isEmpty()) {
+                lastEntity = data.get(data.size() - 1);
+            }
+            if (!lastPageFetched && prefetchExecutor != null) {
+                int pageNum = nextPageNum++;
+                T previousEntity = lastEntity;
+                prefetchedPage = CompletableFuture.supplyAsync(() -> pageFetcher.fetch(pageNum, previousEntity),
+                        prefetchExecutor);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return currentPage.next();
+    }
+
+    private SearchResult<T> nextPage() {
+        if (prefetchedPage == null) {
+            return pageFetcher.fetch(nextPageNum++, lastEntity);
+        }
+        try {
+            return prefetchedPage.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        } finally {
+            prefetchedPage = null;
+        }
+    }
+
+    /**
+     * Stops fetching pages. A page that is being prefetched is discarded.
+     */
+    @Override
+    public void close() {
+        lastPageFetched = true;
+        currentPage = Collections.emptyIterator();
+        if (prefetchedPage != null) {
+            prefetchedPage.cancel(false);
+            prefetchedPage = null;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package de.codebarista.shopware.appserver.service;
+
+import de.codebarista.shopware.appserver.model.ShopwareShopEntity;
+import jakarta.annotation.Nonnull;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Optional;
+
+/**
+ * The shop that has been authenticated for the current request.
+ * <p>
+ * The {@link de.codebarista.shopware.appserver.config.ShopwareSignatureVerificationFilter} has to load the shop
+ * to verify the signature of a request. It attaches the shop as details of the authentication, so that the
+ * {@link ShopManagementService} can return it to all downstream components (controllers, token service,
+ * Admin API service) without querying the database again during the same request.
+ * <p>
+ * The authentication is bound to the request thread. Requests that are not authenticated by the filter
+ * (e.g. background jobs) always fall back to the database.
+ *
+ * @param appKey the key of the app the shop has been authenticated for
+ * @param shop   the authenticated shop
+ */
+public record ResolvedShop(@Nonnull String appKey, @Nonnull ShopwareShopEntity shop) {
+
+    /**
+     * Returns the shop authenticated for the current request, if it matches the app and shop ID.
+     */
+    @Nonnull public static Optional<ShopwareShopEntity> find(@Nonnull String appKey, @Nonnull String shopId) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getDetails() instanceof ResolvedShop resolved
+                && resolved.matches(appKey, shopId)) {
+            return Optional.of(resolved.shop());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Detaches the shop from the current request, if it matches the app and shop ID.
+     * Must be called whenever the shop is modified or deleted.
+     */
+    public static void forget(@Nonnull String appKey, @Nonnull String shopId) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication instanceof AbstractAuthenticationToken token
+                && token.getDetails() instanceof ResolvedShop resolved
+                && resolved.matches(appKey, shopId)) {
+            token.setDetails(null);
+        }
+    }
+
+    private boolean matches(String appKey, String shopId) {
+        return this.appKey.equals(appKey) && shop.getShopId().equals(shopId);
+    }
+}
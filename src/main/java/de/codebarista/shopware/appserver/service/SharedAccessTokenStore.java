@@ -0,0 +1,197 @@
+package de.codebarista.shopware.appserver.service;
+
+import de.codebarista.shopware.appserver.ShopwareApp;
+import de.codebarista.shopware.appserver.model.ShopwareAccessTokenEntity;
+import de.codebarista.shopware.appserver.model.ShopwareAccessTokenEntityRepository;
+import de.codebarista.shopware.appserver.service.dto.auth.ShopwareAdminApiAccessTokenDto;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Admin API access tokens shared by all app server nodes that use the same database.
+ * <p>
+ * Used by the {@link ShopwareAccessTokenClientService} as a second-level cache behind its in-memory cache, so that
+ * a token requested by one node is reused by all other nodes and survives restarts. Before a node requests a new
+ * token, it acquires a lease on the row of the shop, so that only one node requests a token for a shop at a time.
+ * <p>
+ * Tokens are encrypted with AES-GCM. The key is derived from the app secret, so the database alone is not enough to
+ * call the Admin API of a shop. The app key and shop ID are authenticated along with the token, so an encrypted
+ * token cannot be moved to another shop.
+ */
+public class SharedAccessTokenStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedAccessTokenStore.class);
+
+    /**
+     * Maximum time a node may take to request a new token before another node may take over
+     */
+    public static final Duration LEASE_DURATION = Duration.ofSeconds(30);
+
+    private static final String CIPHER_ALGORITHM = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+    private static final byte[] KEY_DERIVATION_LABEL = "shopware-app-server access token store"
+            .getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Access token read from the store.
+     *
+     * @param token    the decrypted access token
+     * @param issuedAt time at which the access token has been requested, in epoch milliseconds
+     */
+    public record StoredToken(ShopwareAdminApiAccessTokenDto token, long issuedAt) {
+    }
+
+    private final ShopwareAccessTokenEntityRepository repository;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, SecretKeySpec> encryptionKeys = new ConcurrentHashMap<>();
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    public SharedAccessTokenStore(ShopwareAccessTokenEntityRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Returns the stored token of the shop, or null if there is none or it cannot be decrypted anymore,
+     * e.g. because the app secret has changed.
+     */
+    @Nullable
+    public StoredToken find(@Nonnull ShopwareApp app, @Nonnull String shopId) {
+        var storedToken = repository.findByAppKeyAndShopIdAndAccessTokenNotNull(app.getAppKey(), shopId)
+                .orElse(null);
+        if (storedToken == null || storedToken.expiresIn() == null || storedToken.issuedAt() == null) {
+            return null;
+        }
+        try {
+            String accessToken = decrypt(app, shopId, storedToken.accessToken());
+            var token = new ShopwareAdminApiAccessTokenDto("Bearer", storedToken.expiresIn(), accessToken);
+            return new StoredToken(token, storedToken.issuedAt());
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            LOGGER.debug("Stored shopware access token for {} {} cannot be decrypted", app, shopId, e);
+            return null;
+        }
+    }
+
+    /**
+     * Acquires the lease for requesting a new token for the shop. The lease ends when a token is
+     * {@link #save(ShopwareApp, String, ShopwareAdminApiAccessTokenDto, long) saved}, when it is
+     * {@link #releaseLease(ShopwareApp, String) released}, or after the {@link #LEASE_DURATION}.
+     *
+     * @return true if this node holds the lease, false if another node holds it
+     */
+    public boolean tryAcquireLease(@Nonnull ShopwareApp app, @Nonnull String shopId) {
+        String appKey = app.getAppKey();
+        if (!repository.existsByAppKeyAndShopId(appKey, shopId)) {
+            try {
+                repository.saveAndFlush(new ShopwareAccessTokenEntity(appKey, shopId));
+            } catch (DataIntegrityViolationException e) {
+                // Created concurrently by another node
+            }
+        }
+        long now = System.currentTimeMillis();
+        return repository.acquireLease(appKey, shopId, nodeId, now + LEASE_DURATION.toMillis(), now) == 1;
+    }
+
+    /**
+     * Releases the lease of this node without storing a token, e.g. because the token request failed.
+     */
+    public void releaseLease(@Nonnull ShopwareApp app, @Nonnull String shopId) {
+        repository.releaseLease(app.getAppKey(), shopId, nodeId);
+    }
+
+    /**
+     * Stores the token of the shop and releases the lease of this node.
+     *
+     * @param issuedAt time at which the access token has been requested, in epoch milliseconds
+     */
+    public void save(@Nonnull ShopwareApp app, @Nonnull String shopId, @Nonnull ShopwareAdminApiAccessTokenDto token,
+                     long issuedAt) {
+        String encryptedToken;
+        try {
+            encryptedToken = encrypt(app, shopId, token.getAccessToken());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Encrypting the shopware access token failed", e);
+        }
+        repository.storeAccessToken(app.getAppKey(), shopId, encryptedToken, token.getExpiresIn(), issuedAt);
+        releaseLease(app, shopId);
+    }
+
+    /**
+     * Removes the token from the store if it is still the stored one, e.g. because Shopware has rejected it.
+     */
+    public void discard(@Nonnull ShopwareApp app, @Nonnull String shopId, @Nonnull String accessToken) {
+        StoredToken storedToken = find(app, shopId);
+        if (storedToken != null && accessToken.equals(storedToken.token().getAccessToken())) {
+            repository.discardAccessToken(app.getAppKey(), shopId, storedToken.issuedAt());
+        }
+    }
+
+    /**
+     * Removes the token of the shop, e.g. because the shop has been re-registered or deleted.
+     */
+    public void delete(@Nonnull String appKey, @Nonnull String shopId) {
+        repository.deleteByShop(appKey, shopId);
+    }
+
+    private String encrypt(ShopwareApp app, String shopId, String accessToken) throws GeneralSecurityException {
+        byte[] iv = new byte[IV_LENGTH];
+        secureRandom.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+        cipher.init(Cipher.ENCRYPT_MODE, getEncryptionKey(app), new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+        cipher.updateAAD(associatedData(app, shopId));
+        byte[] cipherText = cipher.doFinal(accessToken.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(ByteBuffer.allocate(iv.length + cipherText.length)
+                .put(iv)
+                .put(cipherText)
+                .array());
+    }
+
+    private String decrypt(ShopwareApp app, String shopId, String encryptedToken) throws GeneralSecurityException {
+        byte[] encrypted = Base64.getDecoder().decode(encryptedToken);
+        if (encrypted.length <= IV_LENGTH) {
+            throw new IllegalArgumentException("Encrypted access token is too short");
+        }
+        Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+        cipher.init(Cipher.DECRYPT_MODE, getEncryptionKey(app),
+                new GCMParameterSpec(TAG_LENGTH_BITS, encrypted, 0, IV_LENGTH));
+        cipher.updateAAD(associatedData(app, shopId));
+        byte[] plainText = cipher.doFinal(encrypted, IV_LENGTH, encrypted.length - IV_LENGTH);
+        return new String(plainText, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Derives a 256-bit AES key from the app secret with HMAC-SHA256, so that the app secret itself is not used as
+     * key and a changed app secret makes all stored tokens of the app unreadable.
+     */
+    private SecretKeySpec getEncryptionKey(ShopwareApp app) {
+        return encryptionKeys.computeIfAbsent(app.getAppKey(), appKey -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(new SecretKeySpec(app.getAppSecret().getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+                return new SecretKeySpec(mac.doFinal(KEY_DERIVATION_LABEL), "AES");
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Deriving the access token encryption key failed", e);
+            }
+        });
+    }
+
+    private static byte[] associatedData(ShopwareApp app, String shopId) {
+        return (app.getAppKey() + '\n' + shopId).getBytes(StandardCharsets.UTF_8);
+    }
+}
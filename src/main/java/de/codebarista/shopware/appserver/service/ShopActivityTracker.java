@@ -0,0 +1,211 @@
+package de.codebarista.shopware.appserver.service;
+
+import de.codebarista.shopware.appserver.model.ShopwareShopEntity;
+import de.codebarista.shopware.appserver.model.ShopwareShopEntityRepository;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tracks when shops have last been used and writes it to {@code SHOPWARE_SHOP.LAST_USED_AT}.
+ * <p>
+ * Writing the column on every request would be too expensive, especially on SQLite. Instead, the shops seen since
+ * the last flush are collected in a concurrent set, which is lock-free for shops that have already been seen.
+ * The set is flushed in a single transaction on a fixed interval, or earlier once it reaches the flush threshold.
+ * Therefore, {@code LAST_USED_AT} is only precise to the flush interval and may lag behind by up to one interval.
+ * <p>
+ * The column is written with a bulk update, which bypasses the shop cache of the {@link ShopManagementService}.
+ * The written shops are therefore invalidated in the cache after each flush.
+ * <p>
+ * Shops are recorded by the {@link de.codebarista.shopware.appserver.config.ShopwareSignatureVerificationFilter}
+ * for every authenticated request and by the {@link AdminApiService} for every Admin API call.
+ */
+public class ShopActivityTracker implements SmartLifecycle {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShopActivityTracker.class);
+
+    /**
+     * Maximum number of shops updated by a single statement, stays below the bind parameter limit of SQLite
+     */
+    private static final int MAX_SHOPS_PER_UPDATE = 500;
+
+    private final ShopwareShopEntityRepository shopwareShopEntityRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration flushInterval;
+    private final int flushThreshold;
+    @Nullable private final ShopManagementService shopManagementService;
+    private final Map<Long, UsedShop> usedShops = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Object flushLock = new Object();
+    private volatile ScheduledExecutorService executor;
+
+    private record UsedShop(String appKey, String shopId) {
+    }
+
+    /**
+     * @param flushInterval  interval in which the used shops are written to the database
+     * @param flushThreshold number of used shops that triggers a flush before the interval has passed
+     */
+    public ShopActivityTracker(ShopwareShopEntityRepository shopwareShopEntityRepository,
+                               PlatformTransactionManager transactionManager,
+                               Duration flushInterval,
+                               int flushThreshold) {
+        this(shopwareShopEntityRepository, transactionManager, flushInterval, flushThreshold, null);
+    }
+
+    /**
+     * @param flushInterval         interval in which the used shops are written to the database
+     * @param flushThreshold        number of used shops that triggers a flush before the interval has passed
+     * @param shopManagementService if present, the written shops are invalidated in its shop cache
+     */
+    public ShopActivityTracker(ShopwareShopEntityRepository shopwareShopEntityRepository,
+                               PlatformTransactionManager transactionManager,
+                               Duration flushInterval,
+                               int flushThreshold,
+                               @Nullable ShopManagementService shopManagementService) {
+        if (flushInterval.isNegative() || flushInterval.isZero()) {
+            throw new IllegalArgumentException("flushInterval must be positive");
+        }
+        if (flushThreshold < 1) {
+            throw new IllegalArgumentException("flushThreshold must be positive");
+        }
+        this.shopwareShopEntityRepository = shopwareShopEntityRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.flushInterval = flushInterval;
+        this.flushThreshold = flushThreshold;
+        this.shopManagementService = shopManagementService;
+    }
+
+    /**
+     * Records that the shop has been used now.
+     */
+    public void recordUsage(@Nonnull ShopwareShopEntity shop) {
+        Long id = shop.getId();
+        if (usedShops.containsKey(id)
+                || usedShops.putIfAbsent(id, new UsedShop(shop.getAppKey(), shop.getShopId())) != null) {
+            return;
+        }
+        if (usedShops.size() >= flushThreshold && flushRequested.compareAndSet(false, true)) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * Writes the usage of all shops recorded since the last flush to the database.
+     * <p>
+     * If the write fails, the shops are recorded again, so that the next flush retries them.
+     *
+     * @return the number of shops that have been written
+     */
+    public int flush() {
+        synchronized (flushLock) {
+            return flushUsedShops();
+        }
+    }
+
+    private int flushUsedShops() {
+        flushRequested.set(false);
+        if (usedShops.isEmpty()) {
+            return 0;
+        }
+        Map<Long, UsedShop> flushedShops = new HashMap<>(usedShops.size());
+        for (Iterator<Map.Entry<Long, UsedShop>> iterator = usedShops.entrySet().iterator(); iterator.hasNext(); ) {
+            var usedShop = iterator.next();
+            flushedShops.put(usedShop.getKey(), usedShop.getValue());
+            iterator.remove();
+        }
+        List<Long> shopIds = new ArrayList<>(flushedShops.keySet());
+
+        OffsetDateTime lastUsedAt = OffsetDateTime.now();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int from = 0; from < shopIds.size(); from += MAX_SHOPS_PER_UPDATE) {
+                    int to = Math.min(shopIds.size(), from + MAX_SHOPS_PER_UPDATE);
+                    shopwareShopEntityRepository.updateLastUsedAt(shopIds.subList(from, to), lastUsedAt);
+                }
+            });
+        } catch (RuntimeException e) {
+            flushedShops.forEach(usedShops::putIfAbsent);
+            throw e;
+        }
+        if (shopManagementService != null) {
+            for (UsedShop shop : flushedShops.values()) {
+                shopManagementService.invalidateCachedShop(shop.appKey(), shop.shopId());
+            }
+        }
+        LOGGER.debug("Updated last usage of {} shop(s)", shopIds.size());
+        return shopIds.size();
+    }
+
+    @Override
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shop-activity-tracker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = flushInterval.toMillis();
+        executor.scheduleWithFixedDelay(this::flushSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        synchronized (this) {
+            if (executor == null) {
+                return;
+            }
+            executor.shutdownNow();
+            executor = null;
+        }
+        // Write the remaining usages before the database is shut down
+        flushSafely();
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return executor != null;
+    }
+
+    private void requestFlush() {
+        ScheduledExecutorService currentExecutor = executor;
+        if (currentExecutor == null) {
+            return;
+        }
+        try {
+            currentExecutor.execute(this::flushSafely);
+        } catch (RejectedExecutionException e) {
+            // Stopped concurrently, the remaining usages are written by stop()
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOGGER.atWarn()
+                    .setMessage("Updating the last usage of shops failed")
+                    .setCause(e)
+                    .log();
+        }
+    }
+}
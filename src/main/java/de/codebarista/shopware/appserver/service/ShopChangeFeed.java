@@ -0,0 +1,92 @@
+package de.codebarista.shopware.appserver.service;
+
+import de.codebarista.shopware.appserver.model.ShopwareShopChangeEntity;
+import de.codebarista.shopware.appserver.model.ShopwareShopChangeEntityRepository;
+import jakarta.annotation.Nonnull;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Change feed of the shop registry, shared by all app server nodes that use the same database.
+ * <p>
+ * Every mutation of a shop appends an entry with a monotonically increasing version to the
+ * {@code SHOPWARE_SHOP_CHANGE} table. Each node {@link #poll(ShopChangeListener) polls} the entries it has not seen yet
+ * and drops its cached copy of the changed shops, so that no node keeps using a rotated shop secret.
+ * <p>
+ * Versions are allocated before the writing transaction commits, so concurrent writers may commit them out of
+ * order. Therefore, each poll also re-reads all entries of the last {@link #OVERLAP}, and remembers which of them
+ * have already been handled. Clocks of the nodes must not drift apart by more than the overlap.
+ */
+public class ShopChangeFeed {
+    /**
+     * Time window in which entries are re-read to catch versions that were committed out of order
+     */
+    public static final Duration OVERLAP = Duration.ofMinutes(1);
+
+    /**
+     * Age after which entries are deleted from the table
+     */
+    public static final Duration RETENTION = Duration.ofDays(1);
+
+    private static final Duration PRUNE_INTERVAL = Duration.ofHours(1);
+
+    private final ShopwareShopChangeEntityRepository repository;
+    private final Map<Long, Long> handledVersions = new ConcurrentHashMap<>();
+    private final AtomicLong lastPrunedAt = new AtomicLong();
+    private final long createdAt = System.currentTimeMillis();
+    private long highestVersion = -1;
+
+    public ShopChangeFeed(ShopwareShopChangeEntityRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Appends a change of the shop to the feed. Should be called in the transaction that writes the shop,
+     * so that the change is committed together with it.
+     * <p>
+     * The change is not reported to the listener of this node, because the writer invalidates its state itself.
+     */
+    public void publish(@Nonnull String appKey, @Nonnull String shopId) {
+        long now = System.currentTimeMillis();
+        var change = repository.save(new ShopwareShopChangeEntity(appKey, shopId, now));
+        handledVersions.put(change.getVersion(), now);
+
+        long lastPruned = lastPrunedAt.get();
+        if (now - lastPruned > PRUNE_INTERVAL.toMillis() && lastPrunedAt.compareAndSet(lastPruned, now)) {
+            repository.deleteChangedBefore(now - RETENTION.toMillis());
+        }
+    }
+
+    /**
+     * Reports all changes that have not been handled by this node yet to the listener.
+     * <p>
+     * Must not be called concurrently.
+     *
+     * @return the number of reported changes
+     */
+    public synchronized int poll(@Nonnull ShopChangeListener listener) {
+        long overlapStart = System.currentTimeMillis() - OVERLAP.toMillis();
+        if (highestVersion < 0) {
+            // Shops may have been cached since this node started, so the first poll also re-reads those changes
+            highestVersion = repository.findLatestVersion().orElse(0L);
+            overlapStart = Math.min(overlapStart, createdAt - OVERLAP.toMillis());
+        }
+
+        var changes = repository.findByVersionGreaterThanOrChangedAtGreaterThanEqualOrderByVersion(
+                highestVersion, overlapStart);
+        int reported = 0;
+        for (ShopwareShopChangeEntity change : changes) {
+            highestVersion = Math.max(highestVersion, change.getVersion());
+            if (handledVersions.putIfAbsent(change.getVersion(), change.getChangedAt()) == null) {
+                listener.onShopChanged(change.getAppKey(), change.getShopId(), false);
+                reported++;
+            }
+        }
+        long retainedFrom = overlapStart;
+        handledVersions.values().removeIf(changedAt -> changedAt < retainedFrom);
+        return reported;
+    }
+}
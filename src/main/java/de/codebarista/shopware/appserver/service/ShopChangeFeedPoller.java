@@ -0,0 +1,74 @@
+package de.codebarista.shopware.appserver.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the {@link ShopChangeFeed} in the background, so that shops changed by other app server nodes are
+ * dropped from the shop cache of the {@link ShopManagementService}.
+ * <p>
+ * A poll interval of zero disables polling, e.g. if only a single node is running.
+ */
+public class ShopChangeFeedPoller implements SmartLifecycle {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShopChangeFeedPoller.class);
+
+    private final ShopManagementService shopManagementService;
+    private final Duration pollInterval;
+    private ScheduledExecutorService executor;
+
+    public ShopChangeFeedPoller(ShopManagementService shopManagementService, Duration pollInterval) {
+        if (pollInterval.isNegative()) {
+            throw new IllegalArgumentException("pollInterval must not be negative");
+        }
+        this.shopManagementService = shopManagementService;
+        this.pollInterval = pollInterval;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (executor != null || pollInterval.isZero()) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shop-change-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = pollInterval.toMillis();
+        executor.scheduleWithFixedDelay(this::poll, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return executor != null;
+    }
+
+    private void poll() {
+        try {
+            int changes = shopManagementService.pollShopChanges();
+            if (changes > 0) {
+                LOGGER.debug("Invalidated {} shop(s) changed by other nodes", changes);
+            }
+        } catch (RuntimeException e) {
+            // Keep polling, the next poll catches up with all changes that have been missed
+            LOGGER.atWarn()
+                    .setMessage("Polling the shop change feed failed")
+                    .setCause(e)
+                    .log();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package de.codebarista.shopware.appserver.service;
+
+import jakarta.annotation.Nonnull;
+
+/**
+ * Receives the shops that have been registered, confirmed or deleted, on this or on another app server node.
+ * <p>
+ * Register listeners with {@link ShopManagementService#addShopChangeListener(ShopChangeListener)} to drop state
+ * that is derived from a shop, e.g. cached access tokens.
+ */
+@FunctionalInterface
+public interface ShopChangeListener {
+    /**
+     * @param changedByThisNode true if this node has written the change, false if it has been received from the
+     *                          shop change feed. State that is shared between the nodes, e.g. in the database,
+     *                          should only be dropped by the node that has written the change.
+     */
+    void onShopChanged(@Nonnull String appKey, @Nonnull String shopId, boolean changedByThisNode);
+}
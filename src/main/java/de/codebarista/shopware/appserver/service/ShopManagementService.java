@@ -11,10 +11,15 @@ import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -31,17 +36,61 @@ public class ShopManagementService {
 
     private final ShopwareShopEntityRepository shopwareShopEntityRepository;
     private final AppServerProperties properties;
+    @Nullable private final SignatureService signatureService;
+    private final ShopRegistryCache shopCache;
+    @Nullable private final ShopChangeFeed shopChangeFeed;
+    @Nullable private final TransactionTemplate transactionTemplate;
+    private final List<ShopChangeListener> shopChangeListeners = new CopyOnWriteArrayList<>();
 
     public ShopManagementService(ShopwareShopEntityRepository shopwareShopEntityRepository,
                                  AppServerProperties properties) {
+        this(shopwareShopEntityRepository, properties, null);
+    }
+
+    /**
+     * @param signatureService if present, cached key material of rotated and deleted shop secrets is evicted from it
+     */
+    public ShopManagementService(ShopwareShopEntityRepository shopwareShopEntityRepository,
+                                 AppServerProperties properties,
+                                 @Nullable SignatureService signatureService) {
+        this(shopwareShopEntityRepository, properties, signatureService, null);
+    }
+
+    /**
+     * @param signatureService if present, cached key material of rotated and deleted shop secrets is evicted from it
+     * @param shopChangeFeed   if present, shop changes are published to other app server nodes and
+     *                         {@link #pollShopChanges()} invalidates shops changed by them
+     */
+    public ShopManagementService(ShopwareShopEntityRepository shopwareShopEntityRepository,
+                                 AppServerProperties properties,
+                                 @Nullable SignatureService signatureService,
+                                 @Nullable ShopChangeFeed shopChangeFeed) {
+        this(shopwareShopEntityRepository, properties, signatureService, shopChangeFeed, null);
+    }
+
+    /**
+     * @param signatureService   if present, cached key material of rotated and deleted shop secrets is evicted from it
+     * @param shopChangeFeed     if present, shop changes are published to other app server nodes and
+     *                           {@link #pollShopChanges()} invalidates shops changed by them
+     * @param transactionManager if present, a shop and its entry in the shop change feed are written in one transaction
+     */
+    public ShopManagementService(ShopwareShopEntityRepository shopwareShopEntityRepository,
+                                 AppServerProperties properties,
+                                 @Nullable SignatureService signatureService,
+                                 @Nullable ShopChangeFeed shopChangeFeed,
+                                 @Nullable PlatformTransactionManager transactionManager) {
         this.shopwareShopEntityRepository = shopwareShopEntityRepository;
         this.properties = properties;
+        this.signatureService = signatureService;
+        this.shopChangeFeed = shopChangeFeed;
+        this.transactionTemplate = transactionManager != null ? new TransactionTemplate(transactionManager) : null;
+        this.shopCache = new ShopRegistryCache(properties.getShopCacheSize());
     }
 
     @Nonnull public String registerShop(@Nonnull ShopwareApp app, @Nonnull String shopId, @Nonnull String shopUrl,
                                         @Nullable String shopwareVersion, boolean reRegistrationVerifiedWithShopSignature) {
         String shopHost = inferShopHost(shopUrl);
-        ShopwareShopEntity shop = getShopById(app, shopId).orElse(new ShopwareShopEntity(app.getAppKey(), shopId));
+        ShopwareShopEntity shop = loadShopForUpdate(app, shopId).orElse(new ShopwareShopEntity(app.getAppKey(), shopId));
         if (shopwareVersion != null) {
             shop.updateShopwareVersion(shopwareVersion);
         }
@@ -52,9 +101,13 @@ public class ShopManagementService {
         }
 
         String secret = generateShopSecret();
+        // A previous registration that has never been confirmed is discarded
+        String discardedPendingSecret = shop.getPendingShopSecret();
         shop.setPendingRegistration(secret, shopUrl);
 
-        shop = shopwareShopEntityRepository.save(shop);
+        ShopwareShopEntity shopToSave = shop;
+        shop = writeShop(app.getAppKey(), shopId, () -> shopwareShopEntityRepository.save(shopToSave));
+        evictSecret(discardedPendingSecret);
         if (shop.getShopSecret().isEmpty()) {
             app.onRegisterShop(shopHost, shopId, shop.getId());
         } else {
@@ -81,7 +134,7 @@ public class ShopManagementService {
     public boolean confirmShopRegistration(
             @Nonnull ShopwareApp app, @Nonnull String shopId, @Nonnull String shopUrl, @Nonnull String apiKey, @Nonnull String secretKey) {
         String shopHost = inferShopHost(shopUrl);
-        return shopwareShopEntityRepository.findByAppKeyAndShopId(app.getAppKey(), shopId)
+        return loadShopForUpdate(app, shopId)
                 .map(shopEntity -> confirmRegistration(shopEntity, shopHost, apiKey, secretKey))
                 .orElse(false);
     }
@@ -108,20 +161,27 @@ public class ShopManagementService {
             return false;
         }
 
+        String rotatedSecret = shop.getShopSecret();
         shop.confirmPendingRegistrationAndAddShopApiSecrets(apiKey, secretKey);
         shop.setShopHost(confirmShopHost);
-        shopwareShopEntityRepository.save(shop);
+        writeShop(shop.getAppKey(), shop.getShopId(), () -> shopwareShopEntityRepository.save(shop));
+        evictSecret(rotatedSecret);
         return true;
     }
 
+    /**
+     * Returns the shop with the host of the given URL, from the in-memory shop cache.
+     * The returned entity is a detached copy, modifying it does not affect the cache.
+     */
     @Nonnull public Optional<ShopwareShopEntity> getShopByUrl(@Nonnull ShopwareApp app, @Nonnull String shopUrl) {
         String shopHost = inferShopHost(shopUrl);
         LOGGER.debug("Get shop for {} by host '{}'", app, shopHost);
-        var shops = shopwareShopEntityRepository.findByAppKeyAndShopHost(app.getAppKey(), shopHost);
+        var shops = shopCache.getByHost(app.getAppKey(), shopHost,
+                () -> shopwareShopEntityRepository.findByAppKeyAndShopHost(app.getAppKey(), shopHost));
         if (shops.isEmpty()) {
             return Optional.empty();
         } else if (shops.size() == 1) {
-            return Optional.of(shops.get(0));
+            return Optional.of(shops.get(0).copy());
         } else {
             String candidates = shops.stream()
                     .map(shop -> shop.getShopId() + ": " + shop.getShopRequestUrl())
@@ -132,34 +192,162 @@ public class ShopManagementService {
         }
     }
 
+    /**
+     * Returns the shop with the specified ID.
+     * <p>
+     * If the shop has been authenticated for the current request, it is returned without querying the database.
+     * See {@link ResolvedShop}. Otherwise, it is returned from the in-memory shop cache, which only queries the
+     * database on the first lookup. The returned entity is a detached copy, modifying it does not affect the cache.
+     */
     @Nonnull public Optional<ShopwareShopEntity> getShopById(@Nonnull ShopwareApp app, @Nonnull String shopId) {
         LOGGER.debug("Get shop for {} by id '{}'", app, shopId);
-        return shopwareShopEntityRepository.findByAppKeyAndShopId(app.getAppKey(), shopId);
+        return findShop(app, shopId);
     }
 
     /**
+     * Like {@link #getShopById(ShopwareApp, String)}.
+     *
      * @throws NoSuchShopException if no shop with the specified ID exists for this app
      */
     @Nonnull public ShopwareShopEntity getShopByIdOrThrow(@Nonnull ShopwareApp app, @Nonnull String shopId) {
         LOGGER.debug("Get shop for {} by id '{}'", app, shopId);
-        return shopwareShopEntityRepository.findByAppKeyAndShopId(app.getAppKey(), shopId)
+        return findShop(app, shopId)
                 .orElseThrow(() -> NoSuchShopException.byId(app, shopId));
     }
 
+    private Optional<ShopwareShopEntity> findShop(ShopwareApp app, String shopId) {
+        Optional<ShopwareShopEntity> resolvedShop = ResolvedShop.find(app.getAppKey(), shopId);
+        if (resolvedShop.isPresent()) {
+            return resolvedShop.map(ShopwareShopEntity::copy);
+        }
+        return Optional.ofNullable(shopCache.getById(app.getAppKey(), shopId,
+                        () -> shopwareShopEntityRepository.findByAppKeyAndShopId(app.getAppKey(), shopId).orElse(null)))
+                .map(ShopwareShopEntity::copy);
+    }
+
+    /**
+     * Loads the shop from the database. The entities of the shop cache are shared and must not be modified.
+     */
+    private Optional<ShopwareShopEntity> loadShopForUpdate(ShopwareApp app, String shopId) {
+        return shopwareShopEntityRepository.findByAppKeyAndShopId(app.getAppKey(), shopId);
+    }
+
+    /**
+     * Writes the shop and publishes the change to the shop change feed in the same transaction, so that other
+     * app server nodes cannot miss a committed change. The state of this node is invalidated after the commit.
+     */
+    private <T> T writeShop(String appKey, String shopId, Supplier<T> write) {
+        Supplier<T> writeAndPublish = () -> {
+            T result = write.get();
+            if (shopChangeFeed != null) {
+                shopChangeFeed.publish(appKey, shopId);
+            }
+            return result;
+        };
+        T result = transactionTemplate != null
+                ? transactionTemplate.execute(status -> writeAndPublish.get())
+                : writeAndPublish.get();
+        onShopChanged(appKey, shopId);
+        return result;
+    }
+
+    /**
+     * Must be called after a shop has been written to the database.
+     */
+    private void onShopChanged(String appKey, String shopId) {
+        shopCache.invalidate(appKey, shopId);
+        ResolvedShop.forget(appKey, shopId);
+        notifyShopChangeListeners(appKey, shopId, true);
+    }
+
+    /**
+     * Called for shops changed by other app server nodes.
+     */
+    private void onShopChangedElsewhere(String appKey, String shopId) {
+        shopCache.invalidate(appKey, shopId);
+        notifyShopChangeListeners(appKey, shopId, false);
+    }
+
+    private void notifyShopChangeListeners(String appKey, String shopId, boolean changedByThisNode) {
+        for (ShopChangeListener listener : shopChangeListeners) {
+            listener.onShopChanged(appKey, shopId, changedByThisNode);
+        }
+    }
+
+    /**
+     * Adds a listener that is called after a shop has been registered, confirmed or deleted,
+     * by this app server node or, if the shop change feed is polled, by another node.
+     */
+    public void addShopChangeListener(@Nonnull ShopChangeListener listener) {
+        shopChangeListeners.add(listener);
+    }
+
+    /**
+     * Drops all shops that have been changed by other app server nodes from the in-memory shop cache
+     * and notifies the {@link ShopChangeListener shop change listeners} about them.
+     * <p>
+     * Called periodically by the {@link ShopChangeFeedPoller}.
+     *
+     * @return the number of changes that have been received
+     */
+    public int pollShopChanges() {
+        if (shopChangeFeed == null) {
+            return 0;
+        }
+        return shopChangeFeed.poll((appKey, shopId, changedByThisNode) -> onShopChangedElsewhere(appKey, shopId));
+    }
+
+    /**
+     * Returns the hit and miss counters of the in-memory shop cache.
+     */
+    @Nonnull public ShopRegistryCache.Statistics getShopCacheStatistics() {
+        return shopCache.getStatistics();
+    }
+
+    /**
+     * Drops the shop from the in-memory shop cache.
+     * <p>
+     * Call this if columns of the shop have been written without this service, e.g. {@code LAST_USED_AT} by the
+     * {@link ShopActivityTracker}.
+     */
+    public void invalidateCachedShop(@Nonnull String appKey, @Nonnull String shopId) {
+        shopCache.invalidate(appKey, shopId);
+    }
+
+    /**
+     * Drops all shops from the in-memory shop cache.
+     * <p>
+     * Call this if the {@code SHOPWARE_SHOP} table has been modified without this service.
+     */
+    public void invalidateShopCache() {
+        shopCache.invalidateAll();
+    }
+
     public void deleteShop(@Nonnull ShopwareApp app, @Nonnull String shopId, @Nonnull String shopUrl) {
         String shopHost = inferShopHost(shopUrl);
 
-        final var shop = shopwareShopEntityRepository.findByAppKeyAndShopId(app.getAppKey(), shopId).orElse(null);
+        final var shop = loadShopForUpdate(app, shopId).orElse(null);
         if (shop == null) {
             return;
         }
 
         app.onDeleteShop(shopHost, shopId, shop.getId());
-        shopwareShopEntityRepository.delete(shop);
+        writeShop(app.getAppKey(), shopId, () -> {
+            shopwareShopEntityRepository.delete(shop);
+            return shop;
+        });
+        evictSecret(shop.getShopSecret());
+        evictSecret(shop.getPendingShopSecret());
 
         LOGGER.info("Deleted shop {} ({}) for {}", shopId, shopHost, app);
     }
 
+    private void evictSecret(@Nullable String secret) {
+        if (signatureService != null) {
+            signatureService.evictSecret(secret);
+        }
+    }
+
     String generateShopSecret() {
         return NanoIdUtils.randomNanoId(NanoIdUtils.DEFAULT_NUMBER_GENERATOR, SHOP_SECRET_ALPHABET, 64);
     }
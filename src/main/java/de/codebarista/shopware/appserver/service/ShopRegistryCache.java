@@ -0,0 +1,161 @@
+package de.codebarista.shopware.appserver.service;
+
+import de.codebarista.shopware.appserver.model.ShopwareShopEntity;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded in-memory cache of registered shops used by the {@link ShopManagementService}.
+ * <p>
+ * Shops are cached by (app key, shop ID) and, as a secondary index, by (app key, shop host).
+ * Both maps are least-recently-used caches that are populated lazily on the first lookup.
+ * Unknown shops are not cached, so a shop that has just been registered is found immediately.
+ * <p>
+ * The cached entities are shared between threads and must not be modified. Writes must load the shop from the
+ * database and {@link #invalidate(String, String) invalidate} the cache after they have been committed.
+ * Lookups that started before an invalidation do not populate the cache, so a concurrent write can never be
+ * overwritten by stale data.
+ */
+public class ShopRegistryCache {
+    /**
+     * Hit and miss counters of the cache.
+     *
+     * @param hits   number of lookups served from memory
+     * @param misses number of lookups that had to query the database
+     * @param size   number of shops currently cached by shop ID
+     */
+    public record Statistics(long hits, long misses, int size) {
+    }
+
+    private record ShopKey(String appKey, String shopId) {
+    }
+
+    private record HostKey(String appKey, String shopHost) {
+    }
+
+    private final int maxSize;
+    private final Map<ShopKey, ShopwareShopEntity> shopsById;
+    private final Map<HostKey, List<ShopwareShopEntity>> shopsByHost;
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxSize maximum number of cached entries per index. A value of 0 disables the cache.
+     */
+    public ShopRegistryCache(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must not be negative");
+        }
+        this.maxSize = maxSize;
+        this.shopsById = lruMap(maxSize);
+        this.shopsByHost = lruMap(maxSize);
+    }
+
+    /**
+     * Returns the cached shop or loads it with the loader and caches it.
+     */
+    @Nullable public ShopwareShopEntity getById(@Nonnull String appKey, @Nonnull String shopId,
+                                                @Nonnull Supplier<ShopwareShopEntity> loader) {
+        var key = new ShopKey(appKey, shopId);
+        ShopwareShopEntity shop;
+        synchronized (shopsById) {
+            shop = shopsById.get(key);
+        }
+        if (shop != null) {
+            hits.increment();
+            return shop;
+        }
+        misses.increment();
+        long generationBeforeLoad = generation.get();
+        shop = loader.get();
+        if (shop != null && maxSize > 0) {
+            synchronized (shopsById) {
+                if (generation.get() == generationBeforeLoad) {
+                    shopsById.put(key, shop);
+                }
+            }
+        }
+        return shop;
+    }
+
+    /**
+     * Returns the cached shops of the host or loads them with the loader and caches them.
+     */
+    @Nonnull public List<ShopwareShopEntity> getByHost(@Nonnull String appKey, @Nonnull String shopHost,
+                                                       @Nonnull Supplier<List<ShopwareShopEntity>> loader) {
+        var key = new HostKey(appKey, shopHost);
+        List<ShopwareShopEntity> shops;
+        synchronized (shopsByHost) {
+            shops = shopsByHost.get(key);
+        }
+        if (shops != null) {
+            hits.increment();
+            return shops;
+        }
+        misses.increment();
+        long generationBeforeLoad = generation.get();
+        shops = List.copyOf(loader.get());
+        if (!shops.isEmpty() && maxSize > 0) {
+            synchronized (shopsByHost) {
+                if (generation.get() == generationBeforeLoad) {
+                    shopsByHost.put(key, shops);
+                }
+            }
+        }
+        return shops;
+    }
+
+    /**
+     * Removes the shop from the cache.
+     * <p>
+     * The host index is cleared completely, because the host of the shop may have changed with the write.
+     * Shop lifecycle writes are rare, so this is cheaper than tracking the hosts of each shop.
+     */
+    public void invalidate(@Nonnull String appKey, @Nonnull String shopId) {
+        generation.incrementAndGet();
+        synchronized (shopsById) {
+            shopsById.remove(new ShopKey(appKey, shopId));
+        }
+        synchronized (shopsByHost) {
+            shopsByHost.clear();
+        }
+    }
+
+    /**
+     * Removes all shops from the cache, e.g. after the database has been modified by other means.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        synchronized (shopsById) {
+            shopsById.clear();
+        }
+        synchronized (shopsByHost) {
+            shopsByHost.clear();
+        }
+    }
+
+    @Nonnull public Statistics getStatistics() {
+        int size;
+        synchronized (shopsById) {
+            size = shopsById.size();
+        }
+        return new Statistics(hits.sum(), misses.sum(), size);
+    }
+
+    private static <K, V> Map<K, V> lruMap(int maxSize) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+}
@@ -6,8 +6,11 @@ import de.codebarista.shopware.appserver.exception.ShopwareAccessException;
 import de.codebarista.shopware.appserver.model.ShopwareShopEntity;
 import de.codebarista.shopware.appserver.service.dto.auth.ShopwareAdminApiAccessTokenDto;
 import de.codebarista.shopware.appserver.service.dto.auth.ShopwareAdminApiTokenRequest;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -16,9 +19,22 @@ import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.Comparator;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Service for obtaining and caching Shopware Admin API access tokens.
@@ -29,32 +45,289 @@ import java.util.concurrent.ConcurrentHashMap;
 public class ShopwareAccessTokenClientService {
     private static final Logger LOGGER = LoggerFactory.getLogger(ShopwareAccessTokenClientService.class);
 
+    /**
+     * Minimum time between two sweeps of the token cache for stale and idle tokens
+     */
+    private static final long SWEEP_INTERVAL_MILLIS = Duration.ofMinutes(1).toMillis();
+
+    /**
+     * Maximum time to wait for another node that holds the lease for requesting the token of a shop,
+     * before requesting a token without the lease
+     */
+    private static final long SHARED_TOKEN_WAIT_MILLIS = Duration.ofSeconds(5).toMillis();
+    private static final long SHARED_TOKEN_POLL_MILLIS = 100;
+
+    /**
+     * Statistics of the token cache.
+     *
+     * @param hits                       number of calls served from the cache
+     * @param misses                     number of calls that had to wait for a token request
+     * @param evictions                  number of tokens removed because they were stale, idle or exceeded the
+     *                                   maximum size of the cache
+     * @param size                       number of cached tokens
+     * @param tokenRequests              number of token requests sent to Shopware, including renewals ahead of time
+     * @param averageTokenRequestLatency average duration of a token request
+     * @param maxTokenRequestLatency     longest duration of a token request
+     */
+    public record CacheStatistics(long hits, long misses, long evictions, int size, long tokenRequests,
+                                  Duration averageTokenRequestLatency, Duration maxTokenRequestLatency) {
+    }
+
     private final RestTemplate restTemplate;
     private final ShopManagementService shopManagementService;
     private final ConcurrentHashMap<CacheKey, CachedToken> tokenCache;
+    /**
+     * Token requests in flight, so that concurrent callers for the same shop wait for a single request
+     */
+    private final ConcurrentHashMap<CacheKey, CompletableFuture<ShopwareAdminApiAccessTokenDto>> pendingTokenRequests;
     private final boolean sslOnly;
+    /**
+     * Second-level cache shared with other nodes. Null if the shared token store is disabled.
+     */
+    @Nullable private final SharedAccessTokenStore sharedAccessTokenStore;
+    /**
+     * Renews the tokens of recently active shops before they become stale. Null if refresh-ahead is disabled.
+     */
+    @Nullable private final ScheduledExecutorService refreshScheduler;
+    private final long refreshAheadActiveWindowMillis;
+    private final int maxCacheSize;
+    private final long idleTimeoutMillis;
+    private final AtomicLong lastSweepAt = new AtomicLong(System.currentTimeMillis());
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder tokenRequests = new LongAdder();
+    private final LongAdder tokenRequestNanos = new LongAdder();
+    private final AtomicLong maxTokenRequestNanos = new AtomicLong();
 
     public ShopwareAccessTokenClientService(RestTemplate restTemplate,
                                             ShopManagementService shopManagementService,
                                             AppServerProperties appServerProperties) {
+        this(restTemplate, shopManagementService, appServerProperties, null);
+    }
+
+    /**
+     * @param sharedAccessTokenStore if present, tokens are shared with other app server nodes via the database
+     */
+    public ShopwareAccessTokenClientService(RestTemplate restTemplate,
+                                            ShopManagementService shopManagementService,
+                                            AppServerProperties appServerProperties,
+                                            @Nullable SharedAccessTokenStore sharedAccessTokenStore) {
         this.restTemplate = restTemplate;
         this.shopManagementService = shopManagementService;
+        this.sharedAccessTokenStore = sharedAccessTokenStore;
         tokenCache = new ConcurrentHashMap<>();
+        pendingTokenRequests = new ConcurrentHashMap<>();
         sslOnly = appServerProperties.isSslOnly();
+        maxCacheSize = appServerProperties.getAccessTokenCacheMaxSize();
+        idleTimeoutMillis = appServerProperties.getAccessTokenCacheIdleTimeout().toMillis();
+        refreshAheadActiveWindowMillis = appServerProperties.getAccessTokenRefreshAheadActiveWindow().toMillis();
+        if (appServerProperties.isAccessTokenRefreshAheadEnabled()) {
+            refreshScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "access-token-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            refreshScheduler = null;
+        }
+        // Tokens of re-registered or deleted shops must not be used anymore. The shared token is only removed by
+        // the node that changed the shop, other nodes would remove the token it requested in the meantime.
+        shopManagementService.addShopChangeListener((appKey, shopId, changedByThisNode) -> {
+            if (changedByThisNode) {
+                invalidate(appKey, shopId);
+            } else {
+                removeFromCache(appKey, shopId);
+            }
+        });
     }
 
+    /**
+     * Returns a cached access token for the shop or requests a new one.
+     * <p>
+     * Only one token request per shop is in flight at a time. Concurrent callers wait for its result,
+     * and if it fails, all of them fail. Failures are not cached, the next call requests a new token.
+     * <p>
+     * If refresh-ahead is enabled, the tokens of shops that have been active recently are renewed in the background
+     * before they become stale, so that callers do not have to wait for a token request.
+     * <p>
+     * If the {@link SharedAccessTokenStore} is enabled, tokens missing in memory are looked up in the database first,
+     * and only the node holding the lease of a shop requests a new token from Shopware.
+     *
+     * @throws ShopwareAccessException if no access token could be obtained
+     */
     public String getAccessToken(ShopwareApp app, String shopId) {
         ShopwareShopEntity shop = shopManagementService.getShopByIdOrThrow(app, shopId);
-        CachedToken cachedToken = tokenCache.get(new CacheKey(app, shopId));
+        var key = new CacheKey(app.getAppKey(), shopId);
+        CachedToken cachedToken = tokenCache.get(key);
         if (cachedToken != null && isTokenValid(cachedToken, shop)) {
             LOGGER.debug("Return shopware access token from cache for {}: {}", app, shopId);
+            hits.increment();
+            cachedToken.lastAccessedAt = System.currentTimeMillis();
             return cachedToken.tokenDto.getAccessToken();
         }
+        misses.increment();
+        return requestToken(app, key, shop, null).getAccessToken();
+    }
+
+    /**
+     * Requests a new token, unless a request for the shop is already in flight.
+     *
+     * @param replacedToken the cached token that is renewed ahead of time, or null if there is no valid token
+     */
+    private ShopwareAdminApiAccessTokenDto requestToken(ShopwareApp app, CacheKey key, ShopwareShopEntity shop,
+                                                        @Nullable CachedToken replacedToken) {
+        var tokenRequest = new CompletableFuture<ShopwareAdminApiAccessTokenDto>();
+        var pendingTokenRequest = pendingTokenRequests.putIfAbsent(key, tokenRequest);
+        if (pendingTokenRequest != null) {
+            LOGGER.debug("Wait for pending shopware access token request for {}: {}", app, key.shopId());
+            return awaitTokenRequest(pendingTokenRequest, key.shopId());
+        }
+
+        try {
+            // The token may have been cached by a request that completed after the cache lookup of the caller
+            CachedToken cachedToken = tokenCache.get(key);
+            ShopwareAdminApiAccessTokenDto token;
+            if (cachedToken != null && cachedToken != replacedToken && isTokenValid(cachedToken, shop)) {
+                token = cachedToken.tokenDto;
+            } else {
+                var issuedToken = sharedAccessTokenStore != null
+                        ? obtainSharedToken(app, key, shop, replacedToken)
+                        : requestNewAccessToken(app, shop);
+                token = issuedToken.token();
+                cacheToken(app, key, issuedToken, replacedToken);
+            }
+            tokenRequest.complete(token);
+            return token;
+        } catch (RuntimeException e) {
+            tokenRequest.completeExceptionally(e);
+            throw e;
+        } finally {
+            pendingTokenRequests.remove(key, tokenRequest);
+        }
+    }
+
+    private ShopwareAdminApiAccessTokenDto awaitTokenRequest(
+            CompletableFuture<ShopwareAdminApiAccessTokenDto> tokenRequest, String shopId) {
+        try {
+            return tokenRequest.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ShopwareAccessException cause) {
+                // Every waiter gets its own exception, so that its stack trace shows the waiting caller
+                throw new ShopwareAccessException(cause.getMessage(), cause);
+            } else if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new ShopwareAccessException("Could not get access token for shop " + shopId, e.getCause());
+        }
+    }
+
+    /**
+     * Returns the token stored by another node, or requests a new one if this node acquires the lease of the shop.
+     * If another node holds the lease, waits for its token up to {@link #SHARED_TOKEN_WAIT_MILLIS}.
+     * <p>
+     * The shared store only saves token requests. If the database cannot be accessed, or the other node does not
+     * store a token in time, the token is requested without the store.
+     */
+    private IssuedToken obtainSharedToken(ShopwareApp app, CacheKey key,
+                                          ShopwareShopEntity shop,
+                                          @Nullable CachedToken replacedToken) {
+        Objects.requireNonNull(sharedAccessTokenStore);
+        long waitUntil = System.currentTimeMillis() + SHARED_TOKEN_WAIT_MILLIS;
+        try {
+            while (true) {
+                var storedToken = findSharedToken(app, key, shop, replacedToken);
+                if (storedToken != null) {
+                    return storedToken;
+                }
+                if (sharedAccessTokenStore.tryAcquireLease(app, key.shopId())) {
+                    return requestAndShareToken(app, key, shop, replacedToken);
+                }
+                if (System.currentTimeMillis() >= waitUntil) {
+                    LOGGER.debug("Timed out waiting for another node to request the shopware access token for {} {}",
+                            app, key.shopId());
+                    break;
+                }
+                Thread.sleep(SHARED_TOKEN_POLL_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (DataAccessException e) {
+            LOGGER.atWarn()
+                    .setMessage("Shared shopware access token store is not available for {} {}")
+                    .addArgument(app)
+                    .addArgument(key.shopId())
+                    .setCause(e)
+                    .log();
+        }
+        return requestNewAccessToken(app, shop);
+    }
+
+    private IssuedToken requestAndShareToken(ShopwareApp app, CacheKey key, ShopwareShopEntity shop,
+                                             @Nullable CachedToken replacedToken) {
+        Objects.requireNonNull(sharedAccessTokenStore);
+        IssuedToken issuedToken;
+        try {
+            // Another node may have stored its token and released the lease since the last lookup
+            issuedToken = findSharedToken(app, key, shop, replacedToken);
+            if (issuedToken != null) {
+                sharedAccessTokenStore.releaseLease(app, key.shopId());
+                return issuedToken;
+            }
+            issuedToken = requestNewAccessToken(app, shop);
+        } catch (RuntimeException e) {
+            try {
+                sharedAccessTokenStore.releaseLease(app, key.shopId());
+            } catch (DataAccessException releaseException) {
+                e.addSuppressed(releaseException);
+            }
+            throw e;
+        }
+        try {
+            sharedAccessTokenStore.save(app, key.shopId(), issuedToken.token(), issuedToken.issuedAtMillis());
+        } catch (DataAccessException e) {
+            // The token is still cached in memory, other nodes request their own after the lease has ended
+            LOGGER.atWarn()
+                    .setMessage("Storing the shopware access token failed for {} {}")
+                    .addArgument(app)
+                    .addArgument(key.shopId())
+                    .setCause(e)
+                    .log();
+        }
+        return issuedToken;
+    }
+
+    @Nullable
+    private IssuedToken findSharedToken(ShopwareApp app, CacheKey key, ShopwareShopEntity shop,
+                                        @Nullable CachedToken replacedToken) {
+        Objects.requireNonNull(sharedAccessTokenStore);
+        var storedToken = sharedAccessTokenStore.find(app, key.shopId());
+        if (storedToken == null) {
+            return null;
+        }
+        var issuedToken = new IssuedToken(storedToken.token(),
+                OffsetDateTime.ofInstant(Instant.ofEpochMilli(storedToken.issuedAt()), ZoneId.systemDefault()));
+        if (issuedToken.staleAt() <= System.currentTimeMillis()
+                || !shop.getRegistrationConfirmedAt().isBefore(issuedToken.issuedAt())) {
+            return null;
+        }
+        if (replacedToken != null
+                && replacedToken.tokenDto.getAccessToken().equals(storedToken.token().getAccessToken())) {
+            // Renewing ahead of time, the stored token is the one that is being replaced
+            return null;
+        }
+        LOGGER.debug("Use shared shopware access token for {} {}", app, key.shopId());
+        return issuedToken;
+    }
 
-        LOGGER.debug("Request new shopware access token for {}: {}", app, shopId);
-        ShopwareAdminApiAccessTokenDto newToken = requestNewAccessToken(shop);
-        cacheToken(app, shopId, newToken);
-        return newToken.getAccessToken();
+    private IssuedToken requestNewAccessToken(ShopwareApp app, ShopwareShopEntity shop) {
+        LOGGER.debug("Request new shopware access token for {}: {}", app, shop.getShopId());
+        long startedAt = System.nanoTime();
+        try {
+            return new IssuedToken(requestNewAccessToken(shop), OffsetDateTime.now());
+        } finally {
+            recordTokenRequest(System.nanoTime() - startedAt);
+        }
     }
 
     private ShopwareAdminApiAccessTokenDto requestNewAccessToken(ShopwareShopEntity shop) {
@@ -96,45 +369,216 @@ public class ShopwareAccessTokenClientService {
         }
     }
 
-    private void cacheToken(ShopwareApp app, String shopId, ShopwareAdminApiAccessTokenDto token) {
-        // the expires_in value from the token is the "time to live" of the token from the moment of its creation.
-        // we do not fully exhaust this time. After 3/4 of the ttl passed, we request a fresh token.
-        long addedMillis = (long) (token.getExpiresIn() * 1000L * 0.75);
-        long expiresAt = System.currentTimeMillis() + addedMillis;
-        tokenCache.put(new CacheKey(app, shopId), new CachedToken(token, OffsetDateTime.now(), expiresAt));
-        LOGGER.debug("Added new shopware access token to cache for {} {}", app, shopId);
+    private void cacheToken(ShopwareApp app, CacheKey key, IssuedToken issuedToken,
+                            @Nullable CachedToken previousToken) {
+        long now = System.currentTimeMillis();
+        var cachedToken = new CachedToken(issuedToken.token(), issuedToken.issuedAt(), issuedToken.staleAt());
+        // A renewed token inherits the activity of the shop, so that renewals stop once the shop becomes inactive
+        cachedToken.lastAccessedAt = previousToken != null ? previousToken.lastAccessedAt : now;
+        tokenCache.put(key, cachedToken);
+        LOGGER.debug("Added new shopware access token to cache for {} {}", app, key.shopId());
+        scheduleRefresh(app, key, cachedToken, issuedToken);
+        evictIfNecessary(now);
+    }
+
+    private void recordTokenRequest(long nanos) {
+        tokenRequests.increment();
+        tokenRequestNanos.add(nanos);
+        maxTokenRequestNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Removes stale and idle tokens at most once per {@link #SWEEP_INTERVAL_MILLIS}, and the least recently used
+     * tokens if the cache exceeds its maximum size.
+     * <p>
+     * Tokens are only added when they are requested from Shopware, which is rare compared to lookups.
+     * Therefore, lookups do not pay for the bookkeeping of an LRU list, and the cache is scanned here instead.
+     */
+    private void evictIfNecessary(long now) {
+        long lastSweep = lastSweepAt.get();
+        if (now - lastSweep >= SWEEP_INTERVAL_MILLIS && lastSweepAt.compareAndSet(lastSweep, now)) {
+            tokenCache.forEach((key, token) -> {
+                if ((token.expiresAt <= now || now - token.lastAccessedAt > idleTimeoutMillis)
+                        && tokenCache.remove(key, token)) {
+                    evictions.increment();
+                }
+            });
+        }
+
+        int overflow = tokenCache.size() - maxCacheSize;
+        if (overflow > 0) {
+            // Evict 10% more than necessary, so that the cache is not scanned again for every new token
+            int toEvict = overflow + maxCacheSize / 10;
+            tokenCache.entrySet().stream()
+                    .sorted(Comparator.comparingLong(entry -> entry.getValue().lastAccessedAt))
+                    .limit(toEvict)
+                    .forEach(entry -> {
+                        if (tokenCache.remove(entry.getKey(), entry.getValue())) {
+                            evictions.increment();
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Removes the cached and the shared token of the shop, e.g. because the shop has been re-registered or deleted.
+     */
+    public void invalidate(@Nonnull String appKey, @Nonnull String shopId) {
+        removeFromCache(appKey, shopId);
+        if (sharedAccessTokenStore != null) {
+            try {
+                sharedAccessTokenStore.delete(appKey, shopId);
+            } catch (DataAccessException e) {
+                // Tokens issued before the shop has been re-registered are rejected by isTokenValid anyway
+                LOGGER.atWarn()
+                        .setMessage("Removing the shared shopware access token failed for {} {}")
+                        .addArgument(appKey)
+                        .addArgument(shopId)
+                        .setCause(e)
+                        .log();
+            }
+        }
+    }
+
+    private void removeFromCache(String appKey, String shopId) {
+        if (tokenCache.remove(new CacheKey(appKey, shopId)) != null) {
+            LOGGER.debug("Removed shopware access token from cache for {} {}", appKey, shopId);
+        }
+    }
+
+    /**
+     * Removes the token from the cache after Shopware rejected it, so that the next call requests a new one.
+     * <p>
+     * If the cache already holds a different token, e.g. because a concurrent caller has renewed the rejected
+     * one, the cached token is kept.
+     *
+     * @param rejectedAccessToken the access token that Shopware answered with {@code 401 Unauthorized}
+     */
+    public void evictRejectedAccessToken(@Nonnull ShopwareApp app, @Nonnull String shopId,
+                                         @Nonnull String rejectedAccessToken) {
+        tokenCache.computeIfPresent(new CacheKey(app.getAppKey(), shopId), (key, cachedToken) -> {
+            if (!rejectedAccessToken.equals(cachedToken.tokenDto.getAccessToken())) {
+                return cachedToken;
+            }
+            LOGGER.debug("Removed rejected shopware access token from cache for {} {}", app, shopId);
+            return null;
+        });
+        if (sharedAccessTokenStore != null) {
+            try {
+                sharedAccessTokenStore.discard(app, shopId, rejectedAccessToken);
+            } catch (DataAccessException e) {
+                LOGGER.atWarn()
+                        .setMessage("Removing the rejected shared shopware access token failed for {} {}")
+                        .addArgument(app)
+                        .addArgument(shopId)
+                        .setCause(e)
+                        .log();
+            }
+        }
+    }
+
+    /**
+     * Returns the statistics of the token cache.
+     */
+    @Nonnull public CacheStatistics getCacheStatistics() {
+        long requests = tokenRequests.sum();
+        long averageNanos = requests == 0 ? 0 : tokenRequestNanos.sum() / requests;
+        return new CacheStatistics(hits.sum(), misses.sum(), evictions.sum(), tokenCache.size(), requests,
+                Duration.ofNanos(averageNanos), Duration.ofNanos(maxTokenRequestNanos.get()));
+    }
+
+    /**
+     * Schedules the renewal of the token after 50% to 70% of its ttl, before it becomes stale at 75%.
+     * The jitter spreads the renewals of tokens that have been requested at the same time.
+     */
+    private void scheduleRefresh(ShopwareApp app, CacheKey key, CachedToken cachedToken, IssuedToken issuedToken) {
+        if (refreshScheduler == null) {
+            return;
+        }
+        long refreshAt = issuedToken.issuedAtMillis()
+                + (long) (issuedToken.ttlMillis() * (0.5 + ThreadLocalRandom.current().nextDouble(0.2)));
+        long delayMillis = Math.max(0, refreshAt - System.currentTimeMillis());
+        try {
+            refreshScheduler.schedule(() -> refresh(app, key, cachedToken), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Access token refresh scheduler has been shut down");
+        }
+    }
+
+    private void refresh(ShopwareApp app, CacheKey key, CachedToken cachedToken) {
+        if (tokenCache.get(key) != cachedToken) {
+            // The token has been replaced or removed in the meantime
+            return;
+        }
+        if (System.currentTimeMillis() - cachedToken.lastAccessedAt > refreshAheadActiveWindowMillis) {
+            LOGGER.debug("Shop {} {} is inactive, shopware access token is not renewed ahead of time", app, key.shopId());
+            return;
+        }
+        try {
+            ShopwareShopEntity shop = shopManagementService.getShopByIdOrThrow(app, key.shopId());
+            requestToken(app, key, shop, cachedToken);
+        } catch (RuntimeException e) {
+            // The next caller requests the token itself once the cached token has become stale
+            LOGGER.atWarn()
+                    .setMessage("Renewing the shopware access token ahead of time failed for {} {}")
+                    .addArgument(app)
+                    .addArgument(key.shopId())
+                    .setCause(e)
+                    .log();
+        }
+    }
+
+    /**
+     * Stops renewing tokens in the background. Called by Spring when the application context is closed.
+     */
+    public void close() {
+        if (refreshScheduler != null) {
+            refreshScheduler.shutdownNow();
+        }
     }
 
     private boolean isTokenValid(CachedToken token, ShopwareShopEntity shop) {
         return token.expiresAt > System.currentTimeMillis() && shop.getRegistrationConfirmedAt().isBefore(token.createdAt);
     }
 
-    private static class CacheKey {
-        ShopwareApp app;
-        String shopId;
+    private record CacheKey(String appKey, String shopId) {
+    }
 
-        public CacheKey(ShopwareApp app, String shopId) {
-            this.app = app;
-            this.shopId = shopId;
+    /**
+     * @param issuedAt time at which the token has been requested
+     */
+    private record IssuedToken(ShopwareAdminApiAccessTokenDto token, OffsetDateTime issuedAt) {
+        long issuedAtMillis() {
+            return issuedAt.toInstant().toEpochMilli();
         }
 
-        @Override
-        public final boolean equals(Object o) {
-            if (this == o) return true;
-            if (!(o instanceof CacheKey cacheKey)) return false;
-
-            return Objects.equals(app.getAppKey(), cacheKey.app.getAppKey()) && Objects.equals(shopId, cacheKey.shopId);
+        long ttlMillis() {
+            return token.getExpiresIn() * 1000L;
         }
 
-        @Override
-        public int hashCode() {
-            int result = Objects.hashCode(app.getAppKey());
-            result = 31 * result + Objects.hashCode(shopId);
-            return result;
+        /**
+         * The expires_in value from the token is the "time to live" of the token from the moment of its creation.
+         * We do not fully exhaust this time. After 3/4 of the ttl passed, we request a fresh token.
+         */
+        long staleAt() {
+            return issuedAtMillis() + (long) (ttlMillis() * 0.75);
         }
     }
 
-    private record CachedToken(ShopwareAdminApiAccessTokenDto tokenDto, OffsetDateTime createdAt, long expiresAt) {
+    private static class CachedToken {
+        final ShopwareAdminApiAccessTokenDto tokenDto;
+        final OffsetDateTime createdAt;
+        final long expiresAt;
+        /**
+         * Last time the token has been returned to a caller, in epoch milliseconds
+         */
+        volatile long lastAccessedAt;
+
+        CachedToken(ShopwareAdminApiAccessTokenDto tokenDto, OffsetDateTime createdAt, long expiresAt) {
+            this.tokenDto = tokenDto;
+            this.createdAt = createdAt;
+            this.expiresAt = expiresAt;
+        }
     }
 
 }
@@ -6,12 +6,10 @@ import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import de.codebarista.shopware.appserver.exception.SignatureInitializationException;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 
 /**
  * Service for cryptographic signature calculation and verification.
@@ -23,8 +21,12 @@ public class SignatureService {
     public record SignedResponse(String response, String signature) {
     }
 
-    private static final String SIGNATURE_ALGORITHM = "HmacSHA256";
     private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int SIGNATURE_LENGTH = 32;
+
+    // Reused buffer for the decoded signature of the current thread
+    private static final ThreadLocal<byte[]> SIGNATURE_BUFFER =
+        ThreadLocal.withInitial(() -> new byte[SIGNATURE_LENGTH]);
 
     // Thread-safe MessageDigest using ThreadLocal
     private static final ThreadLocal<MessageDigest> HASH_DIGEST =
@@ -37,9 +39,15 @@ public class SignatureService {
         });
 
     private final ObjectMapper objectMapper;
+    private final HmacEngine hmacEngine;
 
     public SignatureService(ObjectMapper objectMapper) {
+        this(objectMapper, new HmacEngine());
+    }
+
+    public SignatureService(ObjectMapper objectMapper, HmacEngine hmacEngine) {
         this.objectMapper = objectMapper;
+        this.hmacEngine = hmacEngine;
     }
 
     public SignedResponse serializeAndCalculateSignature(@Nonnull Object data, @Nonnull String secret) {
@@ -62,32 +70,49 @@ public class SignatureService {
             throw new IllegalArgumentException("Data or secret cannot be null");
         }
         try {
-            SecretKeySpec keySpec = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), SIGNATURE_ALGORITHM);
-            Mac mac = Mac.getInstance(SIGNATURE_ALGORITHM);
-            mac.init(keySpec);
-            return bytesToHex(mac.doFinal(data.getBytes()));
-        } catch (NoSuchAlgorithmException | InvalidKeyException | IllegalArgumentException e) {
+            return bytesToHex(hmacEngine.sign(secret, data.getBytes()));
+        } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException("Could not calculate signature", e);
         }
     }
 
+    /**
+     * Verifies the hex encoded HMAC-SHA256 signature of the message.
+     * <p>
+     * The signature is decoded into a buffer reused by the current thread and compared with the raw digest in
+     * constant time. Apart from the digest itself, verification does not allocate.
+     *
+     * @return true if the signature is valid, false if it is invalid or any argument is missing
+     */
     public boolean verifySignature(@Nullable byte[] message, @Nullable String secret, @Nullable String signature) {
         if (secret == null || secret.isBlank() || signature == null || message == null) {
             return false;
         }
 
+        byte[] expected = SIGNATURE_BUFFER.get();
+        if (!decodeHex(signature, expected)) {
+            return false;
+        }
         try {
-            SecretKeySpec keySpec = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), SIGNATURE_ALGORITHM);
-            Mac mac = Mac.getInstance(SIGNATURE_ALGORITHM);
-            mac.init(keySpec);
-            String calculated = bytesToHex(mac.doFinal(message));
-            return signature.equals(calculated);
+            byte[] calculated = hmacEngine.sign(secret, message);
+            return MessageDigest.isEqual(expected, calculated);
 
-        } catch (NoSuchAlgorithmException | InvalidKeyException | IllegalArgumentException e) {
+        } catch (IllegalArgumentException e) {
             return false;
         }
     }
 
+    /**
+     * Drops all cached key material of the secret.
+     * <p>
+     * Must be called when a shop secret has been rotated or the shop has been deleted.
+     */
+    public void evictSecret(@Nullable String secret) {
+        if (secret != null && !secret.isEmpty()) {
+            hmacEngine.evict(secret);
+        }
+    }
+
     /**
      * @return SHA-256 hash
      */
@@ -100,14 +125,35 @@ public class SignatureService {
     }
 
     private String bytesToHex(byte[] hash) {
-        StringBuilder hexString = new StringBuilder(2 * hash.length);
-        for (byte b : hash) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) {
-                hexString.append('0');
+        return HexFormat.of().formatHex(hash);
+    }
+
+    /**
+     * Decodes the lowercase hex encoded signature into the target buffer.
+     *
+     * @return false if the signature does not have the length of the target or is not valid lowercase hex
+     */
+    private static boolean decodeHex(String hex, byte[] target) {
+        if (hex.length() != 2 * target.length) {
+            return false;
+        }
+        for (int i = 0; i < target.length; i++) {
+            int high = hexDigit(hex.charAt(2 * i));
+            int low = hexDigit(hex.charAt(2 * i + 1));
+            if (high < 0 || low < 0) {
+                return false;
             }
-            hexString.append(hex);
+            target[i] = (byte) ((high << 4) | low);
+        }
+        return true;
+    }
+
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
         }
-        return hexString.toString();
+        return -1;
     }
 }
@@ -0,0 +1,469 @@
+package de.codebarista.shopware.appserver.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import de.codebarista.shopware.appserver.AdminApi;
+import de.codebarista.shopware.appserver.ShopwareApp;
+import de.codebarista.shopware.appserver.exception.ShopwareAppException;
+import de.codebarista.shopware.appserver.service.dto.sync.IndexingBehavior;
+import de.codebarista.shopware.appserver.service.dto.sync.SyncResult;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Collects single upsert and delete operations for a shop and sends them in chunks to the Admin API sync endpoint.
+ * <p>
+ * A chunk is sent as soon as it contains the maximum number of operations or bytes, or when the flush interval has
+ * passed since its first operation. Consecutive operations with the same entity and action are combined into one
+ * sync operation, so the order of the operations within a chunk is preserved. Up to {@code parallelism} chunks are
+ * sent at the same time; further chunks block the caller until a chunk has been sent. Operations on the same
+ * entity instance in different chunks may therefore be applied in any order, unless the parallelism is 1.
+ * <p>
+ * A failed chunk does not stop the batcher. The outcome of all chunks is returned by {@link #complete()}.
+ * <pre>{@code
+ * try (SyncBatcher batcher = adminApi.syncBatcher(app, shopId)) {
+ *     products.forEach(product -> batcher.upsert("product", product));
+ *     SyncBatcher.Result result = batcher.complete();
+ * }
+ * }</pre>
+ * The limits must be configured before the first operation is added. Adding operations is thread-safe.
+ */
+public class SyncBatcher implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SyncBatcher.class);
+
+    /**
+     * Estimated bytes of the JSON structure around the payload of a sync operation
+     */
+    private static final int OPERATION_OVERHEAD_BYTES = 64;
+
+    /**
+     * Chunk that has not been applied by Shopware.
+     *
+     * @param chunkNumber number of the chunk, starting at 1
+     * @param operations  number of operations in the chunk
+     * @param result      the unsuccessful sync result, or null if the request failed
+     * @param exception   the exception of the failed request, or null if Shopware returned an unsuccessful result
+     */
+    public record FailedChunk(int chunkNumber, int operations, @Nullable SyncResult result,
+                              @Nullable RuntimeException exception) {
+    }
+
+    /**
+     * Progress of a batcher.
+     *
+     * @param addedOperations number of operations added so far
+     * @param sentOperations  number of operations in the chunks that have been sent, including failed chunks
+     * @param sentChunks      number of chunks that have been sent, including failed chunks
+     * @param failedChunks    number of chunks that have not been applied
+     */
+    public record Progress(long addedOperations, long sentOperations, int sentChunks, int failedChunks) {
+    }
+
+    /**
+     * Outcome of all chunks of a batcher.
+     *
+     * @param chunks       number of sent chunks
+     * @param operations   number of sent operations
+     * @param failedChunks the chunks that have not been applied, ordered by chunk number
+     */
+    public record Result(int chunks, long operations, List<FailedChunk> failedChunks) {
+        public boolean successful() {
+            return failedChunks.isEmpty();
+        }
+
+        public long failedOperations() {
+            return failedChunks.stream().mapToLong(FailedChunk::operations).sum();
+        }
+    }
+
+    private final AdminApi adminApi;
+    private final ShopwareApp app;
+    private final String shopId;
+    private final ObjectMapper objectMapper;
+    private final Executor executor;
+
+    private int maxOperationsPerChunk = 500;
+    private long maxBytesPerChunk = 4 * 1024 * 1024;
+    private Duration flushInterval = Duration.ofSeconds(5);
+    private int parallelism = 2;
+    @Nullable private IndexingBehavior indexingBehavior;
+    @Nullable private Consumer<Progress> progressListener;
+
+    // Current chunk, guarded by this
+    private final List<Map<String, Object>> chunkOperations = new ArrayList<>();
+    @Nullable private List<RawValue> lastPayload;
+    private String lastEntity;
+    private String lastAction;
+    private int pendingOperations;
+    private long pendingBytes;
+    private int chunkNumber;
+    private boolean started;
+    @Nullable private Result result;
+    // Chunks waiting for one of the chunks in flight to finish, guarded by this
+    private final Deque<Runnable> queuedChunks = new ArrayDeque<>();
+    private int chunksInFlight;
+
+    private final AtomicLong addedOperations = new AtomicLong();
+    private final AtomicLong sentOperations = new AtomicLong();
+    private final AtomicInteger sentChunks = new AtomicInteger();
+    private final Queue<FailedChunk> failedChunks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param objectMapper serializes the payloads, should be the one used by the Admin API requests
+     * @param executor     sends the chunks
+     */
+    public SyncBatcher(AdminApi adminApi, ShopwareApp app, String shopId, ObjectMapper objectMapper,
+                       Executor executor) {
+        this.adminApi = adminApi;
+        this.app = app;
+        this.shopId = shopId;
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+    }
+
+    /**
+     * Sets the maximum number of operations per chunk (default is 500).
+     *
+     * @return this SyncBatcher for method chaining
+     */
+    public synchronized SyncBatcher maxOperationsPerChunk(int maxOperationsPerChunk) {
+        checkNotStarted();
+        if (maxOperationsPerChunk < 1) {
+            throw new IllegalArgumentException("maxOperationsPerChunk must be positive");
+        }
+        this.maxOperationsPerChunk = maxOperationsPerChunk;
+        return this;
+    }
+
+    /**
+     * Sets the maximum serialized size of the payloads per chunk (default is 4 MiB). A single operation that is
+     * larger is sent in a chunk of its own.
+     *
+     * @return this SyncBatcher for method chaining
+     */
+    public synchronized SyncBatcher maxBytesPerChunk(long maxBytesPerChunk) {
+        checkNotStarted();
+        if (maxBytesPerChunk < 1) {
+            throw new IllegalArgumentException("maxBytesPerChunk must be positive");
+        }
+        this.maxBytesPerChunk = maxBytesPerChunk;
+        return this;
+    }
+
+    /**
+     * Sets the maximum time an operation waits for its chunk to be sent (default is 5 seconds). Zero disables the
+     * timed flush, so an incomplete chunk is only sent by {@link #flush()} or {@link #complete()}.
+     * <p>
+     * The timed flush sends the chunk on the executor, so it must be disabled if the executor runs the chunks on the
+     * calling thread, e.g. {@code Runnable::run}. The blocking sync request would otherwise run on the shared
+     * scheduler thread of {@link CompletableFuture#delayedExecutor}.
+     *
+     * @return this SyncBatcher for method chaining
+     */
+    public synchronized SyncBatcher flushInterval(Duration flushInterval) {
+        checkNotStarted();
+        if (flushInterval.isNegative()) {
+            throw new IllegalArgumentException("flushInterval must not be negative");
+        }
+        this.flushInterval = flushInterval;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of chunks that are sent at the same time (default is 2).
+     *
+     * @return this SyncBatcher for method chaining
+     */
+    public synchronized SyncBatcher parallelism(int parallelism) {
+        checkNotStarted();
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets the indexing behavior of the sync requests (default is the one of
+     * {@link AdminApi#sync(ShopwareApp, String, Object)}).
+     *
+     * @return this SyncBatcher for method chaining
+     */
+    public synchronized SyncBatcher indexingBehavior(@Nullable IndexingBehavior indexingBehavior) {
+        checkNotStarted();
+        this.indexingBehavior = indexingBehavior;
+        return this;
+    }
+
+    /**
+     * Sets a listener that is notified after each chunk has been sent. It is called by the thread that sent the
+     * chunk, so it must be thread-safe and should return quickly.
+     *
+     * @return this SyncBatcher for method chaining
+     */
+    public synchronized SyncBatcher progressListener(@Nullable Consumer<Progress> progressListener) {
+        checkNotStarted();
+        this.progressListener = progressListener;
+        return this;
+    }
+
+    /**
+     * Returns the progress of the batcher. Can be called at any time from any thread.
+     */
+    public Progress getProgress() {
+        return new Progress(addedOperations.get(), sentOperations.get(), sentChunks.get(), failedChunks.size());
+    }
+
+    /**
+     * Adds an upsert of an entity instance.
+     *
+     * @param entity  the entity name (e.g., "product")
+     * @param payload the entity data, serialized to JSON
+     * @return this SyncBatcher for method chaining
+     */
+    public SyncBatcher upsert(@Nonnull String entity, @Nonnull Object payload) {
+        return add(entity, "upsert", payload);
+    }
+
+    /**
+     * Adds a delete of an entity instance.
+     *
+     * @param entity     the entity name (e.g., "product")
+     * @param primaryKey the primary key of the instance, e.g. {@code Map.of("id", id)}
+     * @return this SyncBatcher for method chaining
+     */
+    public SyncBatcher delete(@Nonnull String entity, @Nonnull Object primaryKey) {
+        return add(entity, "delete", primaryKey);
+    }
+
+    /**
+     * Adds a delete of the entity instance with the given ID.
+     *
+     * @param entity the entity name (e.g., "product")
+     * @param id     the ID of the instance
+     * @return this SyncBatcher for method chaining
+     */
+    public SyncBatcher deleteById(@Nonnull String entity, @Nonnull String id) {
+        return delete(entity, Map.of("id", id));
+    }
+
+    /**
+     * Sends the current chunk, even if it is not full.
+     */
+    public synchronized void flush() {
+        if (pendingOperations > 0) {
+            sendChunk();
+            awaitQueuedChunks();
+        }
+    }
+
+    /**
+     * Sends the current chunk and waits until all chunks have been sent. No operations can be added afterwards.
+     *
+     * @return the outcome of all chunks
+     */
+    public synchronized Result complete() {
+        if (result != null) {
+            return result;
+        }
+        if (pendingOperations > 0) {
+            sendChunk();
+        }
+        while (chunksInFlight > 0 || !queuedChunks.isEmpty()) {
+            waitForChunk();
+        }
+        List<FailedChunk> failures = failedChunks.stream()
+                .sorted(Comparator.comparingInt(FailedChunk::chunkNumber))
+                .toList();
+        result = new Result(chunkNumber, sentOperations.get(), failures);
+        return result;
+    }
+
+    /**
+     * {@link #complete() Completes} the batcher, if that has not been done yet. Failed chunks are logged.
+     */
+    @Override
+    public void close() {
+        boolean completed;
+        synchronized (this) {
+            completed = result != null;
+        }
+        if (!completed) {
+            Result outcome = complete();
+            if (!outcome.successful()) {
+                LOGGER.atWarn()
+                        .setMessage("{} of {} sync chunks for shop {} failed")
+                        .addArgument(outcome.failedChunks().size())
+                        .addArgument(outcome.chunks())
+                        .addArgument(shopId)
+                        .log();
+            }
+        }
+    }
+
+    private synchronized SyncBatcher add(String entity, String action, Object payload) {
+        if (result != null) {
+            throw new IllegalStateException("Operations cannot be added to a completed SyncBatcher");
+        }
+        started = true;
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Sync payload of entity " + entity + " cannot be serialized", e);
+        }
+        // The length of the JSON string is a close enough estimate of its size in bytes
+        long size = json.length() + 1;
+        if (pendingOperations > 0 && pendingBytes + size > maxBytesPerChunk) {
+            sendChunk();
+            awaitQueuedChunks();
+        }
+        if (lastPayload == null || !entity.equals(lastEntity) || !action.equals(lastAction)) {
+            lastPayload = new ArrayList<>();
+            lastEntity = entity;
+            lastAction = action;
+            var operation = new LinkedHashMap<String, Object>();
+            operation.put("entity", entity);
+            operation.put("action", action);
+            operation.put("payload", lastPayload);
+            chunkOperations.add(operation);
+            size += OPERATION_OVERHEAD_BYTES;
+        }
+        lastPayload.add(new RawValue(json));
+        addedOperations.incrementAndGet();
+        if (pendingOperations++ == 0 && !flushInterval.isZero()) {
+            scheduleFlush(chunkNumber + 1);
+        }
+        pendingBytes += size;
+        if (pendingOperations >= maxOperationsPerChunk || pendingBytes >= maxBytesPerChunk) {
+            sendChunk();
+            awaitQueuedChunks();
+        }
+        return this;
+    }
+
+    private void scheduleFlush(int chunk) {
+        CompletableFuture.runAsync(() -> {
+            synchronized (this) {
+                // The chunk may already have been sent because it was full
+                if (chunkNumber + 1 == chunk && pendingOperations > 0 && result == null) {
+                    sendChunk();
+                }
+            }
+        }, CompletableFuture.delayedExecutor(flushInterval.toMillis(), TimeUnit.MILLISECONDS, executor));
+    }
+
+    /**
+     * Hands the current chunk over to the executor, or queues it if the maximum number of chunks is in flight.
+     * Never blocks, so that it can be called by the scheduled flush on a thread of the executor.
+     */
+    private void sendChunk() {
+        var body = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < chunkOperations.size(); i++) {
+            body.put("operation-" + i, chunkOperations.get(i));
+        }
+        int operations = pendingOperations;
+        int number = ++chunkNumber;
+        chunkOperations.clear();
+        lastPayload = null;
+        pendingOperations = 0;
+        pendingBytes = 0;
+
+        queuedChunks.add(() -> send(number, operations, body));
+        startQueuedChunks();
+    }
+
+    private void startQueuedChunks() {
+        while (chunksInFlight < parallelism && !queuedChunks.isEmpty()) {
+            Runnable chunk = queuedChunks.remove();
+            chunksInFlight++;
+            try {
+                CompletableFuture.runAsync(chunk, executor).whenComplete((ignored, e) -> chunkFinished());
+            } catch (RuntimeException e) {
+                chunksInFlight--;
+                throw e;
+            }
+        }
+    }
+
+    private synchronized void chunkFinished() {
+        chunksInFlight--;
+        startQueuedChunks();
+        notifyAll();
+    }
+
+    /**
+     * Blocks the caller while chunks are waiting to be sent, so that operations are not added faster than they are
+     * sent. Releases the lock while waiting.
+     */
+    private void awaitQueuedChunks() {
+        while (!queuedChunks.isEmpty()) {
+            waitForChunk();
+        }
+    }
+
+    private void waitForChunk() {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ShopwareAppException("Interrupted while waiting for the sync chunks of shop " + shopId, e);
+        }
+    }
+
+    private void send(int number, int operations, Map<String, Object> body) {
+        try {
+            SyncResult syncResult = indexingBehavior == null
+                    ? adminApi.sync(app, shopId, body)
+                    : adminApi.sync(app, shopId, body, SyncResult.class, indexingBehavior);
+            if (!syncResult.successful()) {
+                failedChunks.add(new FailedChunk(number, operations, syncResult, null));
+            }
+        } catch (RuntimeException e) {
+            LOGGER.atWarn()
+                    .setMessage("Sync chunk {} with {} operations for shop {} failed")
+                    .addArgument(number)
+                    .addArgument(operations)
+                    .addArgument(shopId)
+                    .setCause(e)
+                    .log();
+            failedChunks.add(new FailedChunk(number, operations, null, e));
+        } finally {
+            sentOperations.addAndGet(operations);
+            sentChunks.incrementAndGet();
+        }
+        if (progressListener != null) {
+            try {
+                progressListener.accept(getProgress());
+            } catch (RuntimeException e) {
+                LOGGER.warn("Progress listener of the sync batcher for shop {} failed", shopId, e);
+            }
+        }
+    }
+
+    private void checkNotStarted() {
+        if (started) {
+            throw new IllegalStateException("SyncBatcher must be configured before operations are added");
+        }
+    }
+}
@@ -64,8 +64,7 @@ public class TokenServiceImpl implements TokenService {
     private boolean isAppTokenValid(ShopwareApp app, ShopwareShopEntity shop, String token) {
         String signature = token.substring(TOKEN_TIME_LENGTH + TOKEN_HASH_LENGTH);
         String timestampAndHash = token.substring(0, TOKEN_TIME_LENGTH + TOKEN_HASH_LENGTH);
-        String calculatedSignature = signatureService.calculateSignature(timestampAndHash, shop.getShopSecret());
-        if (!calculatedSignature.equals(signature)) {
+        if (!signatureService.verifySignature(timestampAndHash.getBytes(), shop.getShopSecret(), signature)) {
             return false;
         }
 
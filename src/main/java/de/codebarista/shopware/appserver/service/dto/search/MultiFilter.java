@@ -0,0 +1,49 @@
+package de.codebarista.shopware.appserver.service.dto.search;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Filter that combines other filters with {@code AND} or {@code OR}.
+ * The following SQL statement is executed in the background:
+ * {@code WHERE (filter1 OR filter2)}
+ * <p>
+ * Example usage:
+ * <pre>{@code
+ * MultiFilter.or(List.of(new EqualsFilter<>("active", true), new EqualsFilter<>("stock", 0)));
+ * }</pre>
+ */
+public class MultiFilter extends Filter {
+    @JsonProperty("operator")
+    private final String operator;
+
+    @JsonProperty("queries")
+    private final List<Filter> queries;
+
+    private MultiFilter(String operator, List<Filter> queries) {
+        super("multi");
+        this.operator = operator;
+        this.queries = queries;
+    }
+
+    /**
+     * Creates a filter that matches entities that match all of the given filters.
+     *
+     * @param filters the combined filters
+     * @return a new MultiFilter
+     */
+    public static MultiFilter and(List<? extends Filter> filters) {
+        return new MultiFilter("AND", List.copyOf(filters));
+    }
+
+    /**
+     * Creates a filter that matches entities that match at least one of the given filters.
+     *
+     * @param filters the combined filters
+     * @return a new MultiFilter
+     */
+    public static MultiFilter or(List<? extends Filter> filters) {
+        return new MultiFilter("OR", List.copyOf(filters));
+    }
+}
@@ -0,0 +1,139 @@
+package de.codebarista.shopware.appserver.service.dto.search;
+
+import jakarta.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Keyset (cursor) pagination of a search.
+ * <p>
+ * Shopware turns page numbers into {@code OFFSET} queries, which get slower the deeper the page is. With keyset
+ * pagination, the entities are sorted by the key fields in ascending order, and each page continues after the last
+ * entity of the previous page with a range filter. Pages are requested without a total count, and a page with fewer
+ * entities than the page size is the last page.
+ * <p>
+ * The key fields together must be unique, e.g. {@code productNumber}, or {@code orderDateTime} followed by
+ * {@code orderNumber}. Example usage:
+ * <pre>{@code
+ * SearchKeyset.byField("productNumber", ProductEntity::getProductNumber);
+ * SearchKeyset.byField("orderDateTime", OrderEntity::getOrderDateTime).thenByField("orderNumber", OrderEntity::getOrderNumber);
+ * }</pre>
+ * ID fields ({@code id} and fields ending with {@code Id}) cannot be key fields: Shopware stores IDs as binary and
+ * converts hex IDs for equals filters, but not for range filters. A range filter on an ID therefore does not match
+ * the sort order of the IDs, and pages would skip or repeat entities.
+ * <p>
+ * The query of a keyset search must not have sortings, as the keyset defines the order.
+ *
+ * @param <T> java type of the entity
+ */
+public final class SearchKeyset<T> {
+    private final List<String> fields;
+    private final List<Function<? super T, ?>> keyExtractors;
+
+    private SearchKeyset(List<String> fields, List<Function<? super T, ?>> keyExtractors) {
+        this.fields = List.copyOf(fields);
+        this.keyExtractors = List.copyOf(keyExtractors);
+    }
+
+    /**
+     * Creates a keyset that sorts by the given field.
+     *
+     * @param field        the name of the key field
+     * @param keyExtractor returns the value of the key field of an entity, in the format expected by Shopware
+     * @param <T>          java type of the entity
+     * @return a new SearchKeyset
+     * @throws IllegalArgumentException if the field is an ID field
+     */
+    public static <T> SearchKeyset<T> byField(String field, Function<? super T, ?> keyExtractor) {
+        checkNoIdField(field);
+        return new SearchKeyset<>(List.of(field), List.of(keyExtractor));
+    }
+
+    /**
+     * Creates a keyset that additionally sorts by the given field if the previous key fields are equal.
+     *
+     * @param field        the name of the key field
+     * @param keyExtractor returns the value of the key field of an entity, in the format expected by Shopware
+     * @return a new SearchKeyset
+     * @throws IllegalArgumentException if the field is an ID field
+     */
+    public SearchKeyset<T> thenByField(String field, Function<? super T, ?> keyExtractor) {
+        checkNoIdField(field);
+        var newFields = new ArrayList<>(fields);
+        newFields.add(field);
+        var newKeyExtractors = new ArrayList<>(keyExtractors);
+        newKeyExtractors.add(keyExtractor);
+        return new SearchKeyset<>(newFields, newKeyExtractors);
+    }
+
+    /**
+     * Creates a copy of the query that is sorted by the key fields, without paging it.
+     *
+     * @param query the search criteria without sortings
+     * @return a new SearchQuery
+     * @throws IllegalArgumentException if the query has sortings
+     */
+    public SearchQuery sortedQuery(SearchQuery query) {
+        if (query.hasSortings()) {
+            throw new IllegalArgumentException("The query of a keyset search must not have sortings");
+        }
+        SearchQuery sortedQuery = query.copy();
+        // Natural sorting orders by length first, which does not match the range filters
+        fields.forEach(field -> sortedQuery.addSorting(Sorting.byField(field).naturalSorting(false)));
+        return sortedQuery;
+    }
+
+    /**
+     * Creates the query of the page that follows the given entity. The given query is not modified.
+     *
+     * @param query      the search criteria without sortings
+     * @param limit      the page size
+     * @param lastEntity the last entity of the previous page, or null for the first page
+     * @return a new SearchQuery for the page
+     * @throws IllegalArgumentException if the query has sortings
+     */
+    public SearchQuery pageQuery(SearchQuery query, int limit, @Nullable T lastEntity) {
+        SearchQuery pageQuery = sortedQuery(query).limit(limit).page(1).totalCountMode(TotalCountMode.NONE);
+        if (lastEntity != null) {
+            pageQuery.addFilter(after(lastEntity));
+        }
+        return pageQuery;
+    }
+
+    private static void checkNoIdField(String field) {
+        String name = field.substring(field.lastIndexOf('.') + 1);
+        if (name.equals("id") || name.endsWith("Id")) {
+            throw new IllegalArgumentException("ID field " + field + " cannot be a key field, "
+                    + "because Shopware does not convert IDs in range filters");
+        }
+    }
+
+    /**
+     * Matches the entities after the given one: {@code (f1 > k1) OR (f1 = k1 AND f2 > k2) OR ...}
+     */
+    private Filter after(T entity) {
+        List<Object> keys = new ArrayList<>(fields.size());
+        for (int i = 0; i < fields.size(); i++) {
+            Object key = keyExtractors.get(i).apply(entity);
+            if (key == null) {
+                throw new IllegalStateException("Key field " + fields.get(i) + " of the last entity is null");
+            }
+            keys.add(key);
+        }
+        if (fields.size() == 1) {
+            return new ExclusiveRangeFilter<>(fields.get(0), keys.get(0), null);
+        }
+        List<Filter> alternatives = new ArrayList<>(fields.size());
+        for (int i = 0; i < fields.size(); i++) {
+            List<Filter> conditions = new ArrayList<>(i + 1);
+            for (int j = 0; j < i; j++) {
+                conditions.add(new EqualsFilter<>(fields.get(j), keys.get(j)));
+            }
+            conditions.add(new ExclusiveRangeFilter<>(fields.get(i), keys.get(i), null));
+            alternatives.add(conditions.size() == 1 ? conditions.get(0) : MultiFilter.and(conditions));
+        }
+        return MultiFilter.or(alternatives);
+    }
+}
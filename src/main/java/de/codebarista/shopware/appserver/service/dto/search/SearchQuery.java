@@ -26,6 +26,8 @@ import java.util.Map;
  *     .addSorting(Sorting.byField("name", Order.ASCENDING))
  *     .withAssociation("media", new AssociationCriteria());
  * </pre>
+ * <p>
+ * A query is not thread-safe. Use {@link #copy()} to modify a query that is used by other threads.
  */
 @JsonInclude(value = Include.NON_NULL)
 public class SearchQuery {
@@ -50,6 +52,33 @@ public class SearchQuery {
     @JsonProperty("filter")
     private Collection<Filter> filters;
 
+    @JsonProperty("total-count-mode")
+    private TotalCountMode totalCountMode;
+
+    public SearchQuery() {
+    }
+
+    private SearchQuery(SearchQuery query) {
+        limit = query.limit;
+        page = query.page;
+        associations = query.associations != null ? new HashedMap<>(query.associations) : null;
+        includes = query.includes != null ? new HashedMap<>(query.includes) : null;
+        ids = query.ids != null ? new ArrayList<>(query.ids) : null;
+        sortings = query.sortings != null ? new ArrayList<>(query.sortings) : null;
+        filters = query.filters != null ? new ArrayList<>(query.filters) : null;
+        totalCountMode = query.totalCountMode;
+    }
+
+    /**
+     * Creates a copy of this query that can be modified without affecting this query.
+     * Filters, sortings and association criteria are shared by both queries.
+     *
+     * @return a new SearchQuery with the same criteria
+     */
+    public SearchQuery copy() {
+        return new SearchQuery(this);
+    }
+
     /**
      * Sets the maximum number of results to return.
      *
@@ -72,6 +101,17 @@ public class SearchQuery {
         return this;
     }
 
+    /**
+     * Sets how Shopware determines the {@code total} of the search result.
+     *
+     * @param totalCountMode the total count mode (default is {@link TotalCountMode#NONE})
+     * @return this SearchQuery for method chaining
+     */
+    public SearchQuery totalCountMode(TotalCountMode totalCountMode) {
+        this.totalCountMode = totalCountMode;
+        return this;
+    }
+
     /**
      * Adds an association to load related entities.
      * <p>
@@ -150,4 +190,8 @@ public class SearchQuery {
         return this;
     }
 
+    boolean hasSortings() {
+        return sortings != null && !sortings.isEmpty();
+    }
+
 }
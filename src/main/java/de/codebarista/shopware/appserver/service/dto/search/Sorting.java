@@ -57,4 +57,15 @@ public class Sorting {
         order = Order.ASCENDING;
         return this;
     }
+
+    /**
+     * Sets whether numbers within the values are sorted by their numeric value (default is true).
+     *
+     * @param naturalSorting false to sort by the raw values
+     * @return this Sorting instance for method chaining
+     */
+    public Sorting naturalSorting(boolean naturalSorting) {
+        this.naturalSorting = naturalSorting;
+        return this;
+    }
 }
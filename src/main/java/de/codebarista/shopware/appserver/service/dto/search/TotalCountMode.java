@@ -0,0 +1,24 @@
+package de.codebarista.shopware.appserver.service.dto.search;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Defines how Shopware determines the {@code total} of a search result.
+ */
+public enum TotalCountMode {
+    /**
+     * No count query, the total is the number of entities on the requested page (Shopware's default)
+     */
+    @JsonProperty("none")
+    NONE,
+    /**
+     * Exact number of matching entities, requires an additional count query
+     */
+    @JsonProperty("exact")
+    EXACT,
+    /**
+     * Only counts whether there are entities on the next pages
+     */
+    @JsonProperty("next-pages")
+    NEXT_PAGES
+}
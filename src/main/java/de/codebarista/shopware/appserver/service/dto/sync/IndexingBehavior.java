@@ -0,0 +1,26 @@
+package de.codebarista.shopware.appserver.service.dto.sync;
+
+/**
+ * Defines when Shopware updates the indexes of the entities written by a sync request
+ * ({@code indexing-behavior} header).
+ */
+public enum IndexingBehavior {
+    /**
+     * Indexer messages are dispatched to the message queue for every sync request
+     */
+    USE_QUEUE_INDEXING("use-queue-indexing"),
+    /**
+     * No indexing at all, the indexes have to be updated afterwards, e.g. with one indexing run for a whole import
+     */
+    DISABLE_INDEXING("disable-indexing");
+
+    private final String headerValue;
+
+    IndexingBehavior(String headerValue) {
+        this.headerValue = headerValue;
+    }
+
+    public String getHeaderValue() {
+        return headerValue;
+    }
+}
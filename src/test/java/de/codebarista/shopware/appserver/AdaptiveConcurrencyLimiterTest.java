@@ -0,0 +1,128 @@
+package de.codebarista.shopware.appserver;
+
+import de.codebarista.shopware.appserver.exception.ConcurrencyLimitExceededException;
+import de.codebarista.shopware.appserver.service.AdaptiveConcurrencyLimiter;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AdaptiveConcurrencyLimiterTest {
+    private static final URI SHOP_A = URI.create("https://shop-a.test/api/search/product");
+    private static final URI SHOP_B = URI.create("https://shop-b.test/api/search/product");
+
+    @Test
+    public void callsOverTheLimitFailFast() {
+        var limiter = new AdaptiveConcurrencyLimiter(1, 4, Duration.ZERO);
+
+        String result = limiter.execute(SHOP_A, () -> {
+            assertThatThrownBy(() -> limiter.execute(SHOP_A, () -> "nested"))
+                    .isInstanceOf(ConcurrencyLimitExceededException.class);
+            return limiter.execute(SHOP_B, () -> "other shop");
+        });
+
+        assertThat(result).isEqualTo("other shop");
+    }
+
+    @Test
+    public void callsOverTheLimitWaitForAFreeSlot() throws Exception {
+        var limiter = new AdaptiveConcurrencyLimiter(1, 1, Duration.ofSeconds(5));
+        var started = new CountDownLatch(1);
+        var finish = new CountDownLatch(1);
+        var firstCall = CompletableFuture.supplyAsync(() -> limiter.execute(SHOP_A, () -> {
+            started.countDown();
+            await(finish);
+            return "first";
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        var secondCall = CompletableFuture.supplyAsync(() -> limiter.execute(SHOP_A, () -> "second"));
+        Thread.sleep(50);
+        assertThat(secondCall).isNotDone();
+
+        finish.countDown();
+        assertThat(firstCall.get(5, TimeUnit.SECONDS)).isEqualTo("first");
+        assertThat(secondCall.get(5, TimeUnit.SECONDS)).isEqualTo("second");
+    }
+
+    @Test
+    public void limitIsHalvedOnceOnTooManyRequests() {
+        var limiter = new AdaptiveConcurrencyLimiter(8, 32, Duration.ZERO);
+
+        assertThatThrownBy(() -> limiter.execute(SHOP_A, () -> {
+            assertThatThrownBy(() -> limiter.execute(SHOP_A, () -> {
+                throw tooManyRequests();
+            })).isInstanceOf(HttpClientErrorException.TooManyRequests.class);
+            assertThat(limiter.getLimit(SHOP_A)).isEqualTo(4);
+            // Started before the limit was decreased, so it must not decrease it again
+            throw tooManyRequests();
+        })).isInstanceOf(HttpClientErrorException.TooManyRequests.class);
+
+        assertThat(limiter.getLimit(SHOP_A)).isEqualTo(4);
+        assertThat(limiter.getLimit(SHOP_B)).isEqualTo(8);
+    }
+
+    @Test
+    public void limitGrowsWhileItIsUsedAndIsNotDecreasedBySlowCalls() {
+        var limiter = new AdaptiveConcurrencyLimiter(1, 4, Duration.ZERO);
+
+        limiter.execute(SHOP_A, () -> sleep(1));
+        assertThat(limiter.getLimit(SHOP_A)).isEqualTo(2);
+
+        // A slow endpoint after a fast one is no sign of overload
+        limiter.execute(SHOP_A, () -> sleep(100));
+        assertThat(limiter.getLimit(SHOP_A)).isEqualTo(2);
+    }
+
+    @Test
+    public void onlyReadTimeoutsDecreaseTheLimitOfIOErrors() {
+        var limiter = new AdaptiveConcurrencyLimiter(8, 32, Duration.ZERO);
+
+        assertThatThrownBy(() -> limiter.execute(SHOP_A, () -> {
+            throw new ResourceAccessException("I/O error", new ConnectException("Connection refused"));
+        })).isInstanceOf(ResourceAccessException.class);
+        assertThatThrownBy(() -> limiter.execute(SHOP_A, () -> {
+            throw new ConcurrencyLimitExceededException("Too many concurrent requests");
+        })).isInstanceOf(ConcurrencyLimitExceededException.class);
+        assertThat(limiter.getLimit(SHOP_A)).isEqualTo(8);
+
+        assertThatThrownBy(() -> limiter.execute(SHOP_A, () -> {
+            throw new ResourceAccessException("I/O error", new SocketTimeoutException("Read timed out"));
+        })).isInstanceOf(ResourceAccessException.class);
+        assertThat(limiter.getLimit(SHOP_A)).isEqualTo(4);
+    }
+
+    private static HttpClientErrorException tooManyRequests() {
+        return HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", HttpHeaders.EMPTY,
+                null, null);
+    }
+
+    private static String sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "slept";
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
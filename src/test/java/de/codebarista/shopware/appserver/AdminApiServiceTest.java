@@ -0,0 +1,338 @@
+package de.codebarista.shopware.appserver;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.codebarista.shopware.appserver.config.AppServerProperties;
+import de.codebarista.shopware.appserver.model.ShopwareShopEntity;
+import de.codebarista.shopware.appserver.service.AdminApiService;
+import de.codebarista.shopware.appserver.service.ShopManagementService;
+import de.codebarista.shopware.appserver.service.ShopwareAccessTokenClientService;
+import de.codebarista.shopware.appserver.service.dto.search.EqualsFilter;
+import de.codebarista.shopware.appserver.service.dto.search.SearchKeyset;
+import de.codebarista.shopware.appserver.service.dto.search.SearchQuery;
+import de.codebarista.shopware.appserver.service.dto.search.SearchResult;
+import de.codebarista.shopware.appserver.service.dto.search.Sorting;
+import de.codebarista.shopware.appserver.service.dto.sync.SyncResult;
+import de.codebarista.shopware.testutils.TestAppA;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AdminApiServiceTest {
+    private static final String SHOP_ID = "admin-api-shop";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final TestAppA app = new TestAppA();
+    private RestTemplate restTemplate;
+    private ShopwareAccessTokenClientService tokenClientService;
+    private AdminApiService adminApiService;
+
+    @BeforeEach
+    public void setUp() {
+        var shop = new ShopwareShopEntity(app.getAppKey(), SHOP_ID);
+        shop.setPendingRegistration("secret", "https://myshop.de");
+        var shopManagementService = mock(ShopManagementService.class);
+        when(shopManagementService.getShopByIdOrThrow(app, SHOP_ID)).thenReturn(shop);
+
+        restTemplate = mock(RestTemplate.class);
+        tokenClientService = mock(ShopwareAccessTokenClientService.class);
+        when(tokenClientService.getAccessToken(app, SHOP_ID)).thenReturn("revoked-token", "new-token");
+        adminApiService = new AdminApiService(restTemplate, shopManagementService, tokenClientService,
+                new AppServerProperties());
+    }
+
+    @Test
+    public void rejectedTokenIsEvictedAndRequestIsRetriedOnce() {
+        when(restTemplate.postForObject(any(URI.class), any(HttpEntity.class), eq(SyncResult.class)))
+                .thenAnswer(invocation -> {
+                    HttpEntity<?> request = invocation.getArgument(1);
+                    if ("Bearer revoked-token".equals(request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION))) {
+                        throw unauthorized();
+                    }
+                    return new SyncResult();
+                });
+
+        assertThat(adminApiService.sync(app, SHOP_ID, Map.of())).isNotNull();
+
+        verify(tokenClientService).evictRejectedAccessToken(app, SHOP_ID, "revoked-token");
+        verify(restTemplate, times(2)).postForObject(any(URI.class), any(HttpEntity.class), eq(SyncResult.class));
+    }
+
+    @Test
+    public void secondRejectionIsThrown() {
+        when(restTemplate.postForObject(any(URI.class), any(HttpEntity.class), eq(Object.class)))
+                .thenThrow(unauthorized());
+
+        assertThatThrownBy(() -> adminApiService.postEntity(app, SHOP_ID, "product", Map.of()))
+                .isInstanceOf(HttpClientErrorException.Unauthorized.class);
+
+        verify(tokenClientService).evictRejectedAccessToken(app, SHOP_ID, "revoked-token");
+        verify(restTemplate, times(2)).postForObject(any(URI.class), any(HttpEntity.class), eq(Object.class));
+    }
+
+    @Test
+    public void parallelSearchDoesNotTrustTheReportedTotal() {
+        Queue<JsonNode> requestedQueries = answerSearchesWithProducts(250, Integer.MAX_VALUE);
+        adminApiService.setPageSize(100);
+
+        List<String> products = adminApiService.searchInParallel(app, SHOP_ID, "product", new SearchQuery(),
+                ProductResult.class, null);
+
+        assertThat(products).hasSize(250);
+        // Pages 1 to 3, and the pages 4 to 6 that were in flight when the short page 3 arrived
+        assertThat(requestedQueries).hasSize(6);
+    }
+
+    @Test
+    public void parallelSearchDoesNotRefetchPagesBeyondATooLowTotal() {
+        Queue<JsonNode> requestedQueries = answerSearchesWithProducts(250, 0);
+        adminApiService.setPageSize(100);
+
+        List<String> products = adminApiService.searchInParallel(app, SHOP_ID, "product", new SearchQuery(),
+                ProductResult.class, null);
+
+        assertThat(products).containsExactlyElementsOf(
+                IntStream.range(0, 250).mapToObj(i -> "product-" + i).toList());
+        assertThat(requestedQueries)
+                .extracting(requestedQuery -> requestedQuery.get("page").asInt())
+                .containsExactly(1, 2, 3);
+    }
+
+    @Test
+    public void parallelSearchesOfTheSameShopShareTheParallelism() throws Exception {
+        var inFlight = new AtomicInteger();
+        var maxInFlight = new AtomicInteger();
+        when(restTemplate.postForObject(any(URI.class), any(HttpEntity.class), eq(ProductResult.class)))
+                .thenAnswer(invocation -> {
+                    HttpEntity<?> request = invocation.getArgument(1);
+                    int page = toJson(request.getBody()).get("page").asInt();
+                    List<String> data = IntStream.range(0, page < 10 ? 10 : 5)
+                            .mapToObj(i -> "product-" + page + "-" + i)
+                            .toList();
+                    if (page > 1) {
+                        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                        Thread.sleep(20);
+                        inFlight.decrementAndGet();
+                    }
+                    return OBJECT_MAPPER.convertValue(Map.of("total", 95, "data", data), ProductResult.class);
+                });
+        adminApiService.setPageSize(10);
+
+        var searches = IntStream.range(0, 3)
+                .mapToObj(i -> CompletableFuture.supplyAsync(() -> adminApiService.searchInParallel(app, SHOP_ID,
+                        "product", new SearchQuery(), ProductResult.class, null)))
+                .toList();
+
+        for (var search : searches) {
+            assertThat(search.get(10, TimeUnit.SECONDS)).hasSize(95);
+        }
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(new AppServerProperties().getAdminApiSearchParallelism());
+    }
+
+    @Test
+    public void bulkImportSyncsWithoutIndexingAndIndexesOnce() {
+        Queue<String> indexingBehaviors = new ConcurrentLinkedQueue<>();
+        when(restTemplate.postForObject(any(URI.class), any(HttpEntity.class), eq(SyncResult.class)))
+                .thenAnswer(invocation -> {
+                    HttpEntity<?> request = invocation.getArgument(1);
+                    indexingBehaviors.add(request.getHeaders().getFirst("indexing-behavior"));
+                    return new SyncResult();
+                });
+
+        try (var session = adminApiService.bulkImport(app, SHOP_ID)) {
+            session.upsert("product", Map.of("id", "1"));
+            assertThat(session.complete().indexed()).isTrue();
+        }
+
+        assertThat(indexingBehaviors).containsExactly("disable-indexing");
+        verify(restTemplate).postForObject(argThat((URI uri) -> uri.getPath().equals("/api/_action/index")),
+                any(HttpEntity.class), eq(Object.class));
+    }
+
+    @Test
+    public void pagesAreFetchedInParallelAndReturnedInOrder() {
+        Queue<JsonNode> requestedQueries = answerSearchesWithProducts(250);
+        adminApiService.setPageSize(100);
+        var query = new SearchQuery().addFilter(new EqualsFilter<>("active", true));
+        String originalQuery = toJson(query).toString();
+
+        List<String> products = adminApiService.searchInParallel(app, SHOP_ID, "product", query, ProductResult.class,
+                null);
+
+        assertThat(products).containsExactlyElementsOf(
+                IntStream.range(0, 250).mapToObj(i -> "product-" + i).toList());
+        assertThat(requestedQueries)
+                .extracting(requestedQuery -> requestedQuery.get("page").asInt())
+                .containsExactlyInAnyOrder(1, 2, 3);
+        assertThat(requestedQueries)
+                .filteredOn(requestedQuery -> requestedQuery.get("page").asInt() == 1)
+                .singleElement()
+                .extracting(requestedQuery -> requestedQuery.get("total-count-mode").asText())
+                .isEqualTo("exact");
+        assertThat(toJson(query).toString()).isEqualTo(originalQuery);
+    }
+
+    @Test
+    public void serialSearchDoesNotModifyTheQuery() {
+        Queue<JsonNode> requestedQueries = answerSearchesWithProducts(150);
+        adminApiService.setPageSize(100);
+        var query = new SearchQuery();
+        String originalQuery = toJson(query).toString();
+
+        assertThat(adminApiService.search(app, SHOP_ID, "product", query, ProductResult.class)).hasSize(150);
+
+        assertThat(requestedQueries)
+                .extracting(requestedQuery -> requestedQuery.get("page").asInt())
+                .containsExactly(1, 2);
+        assertThat(toJson(query).toString()).isEqualTo(originalQuery);
+    }
+
+    @Test
+    public void streamFetchesPagesOnlyWhenTheyAreConsumed() {
+        Queue<JsonNode> requestedQueries = answerSearchesWithProducts(1000);
+        adminApiService.setPageSize(100);
+
+        try (var products = adminApiService.searchStream(app, SHOP_ID, "product", new SearchQuery(),
+                ProductResult.class)) {
+            assertThat(requestedQueries).isEmpty();
+            assertThat(products.limit(150)).hasSize(150).last().isEqualTo("product-149");
+        }
+
+        assertThat(requestedQueries)
+                .extracting(requestedQuery -> requestedQuery.get("page").asInt())
+                .containsExactly(1, 2);
+    }
+
+    @Test
+    public void streamStopsAfterTheLastPage() {
+        Queue<JsonNode> requestedQueries = answerSearchesWithProducts(250);
+        adminApiService.setPageSize(100);
+
+        try (var products = adminApiService.searchStream(app, SHOP_ID, "product", new SearchQuery(),
+                ProductResult.class, null, true)) {
+            assertThat(products).containsExactlyElementsOf(
+                    IntStream.range(0, 250).mapToObj(i -> "product-" + i).toList());
+        }
+
+        assertThat(requestedQueries)
+                .extracting(requestedQuery -> requestedQuery.get("page").asInt())
+                .containsExactly(1, 2, 3);
+    }
+
+    @Test
+    public void keysetSearchContinuesAfterTheLastEntity() {
+        Queue<JsonNode> requestedQueries = new ConcurrentLinkedQueue<>();
+        when(restTemplate.postForObject(any(URI.class), any(HttpEntity.class), eq(ProductResult.class)))
+                .thenAnswer(invocation -> {
+                    HttpEntity<?> request = invocation.getArgument(1);
+                    JsonNode query = toJson(request.getBody());
+                    requestedQueries.add(query);
+                    int offset = query.has("filter")
+                            ? Integer.parseInt(query.at("/filter/0/parameters/gt").asText().substring(8)) + 1
+                            : 0;
+                    List<String> data = IntStream.range(offset, Math.min(offset + query.get("limit").asInt(), 250))
+                            .mapToObj(i -> String.format("product-%04d", i))
+                            .toList();
+                    return OBJECT_MAPPER.convertValue(Map.of("total", data.size(), "data", data), ProductResult.class);
+                });
+        adminApiService.setPageSize(100);
+
+        List<String> products = adminApiService.search(app, SHOP_ID, "product", new SearchQuery(),
+                ProductResult.class, null, SearchKeyset.byField("productNumber", Function.identity()));
+
+        assertThat(products).hasSize(250).doesNotHaveDuplicates().isSorted();
+        assertThat(requestedQueries).hasSize(3).allSatisfy(query -> {
+            assertThat(query.get("page").asInt()).isEqualTo(1);
+            assertThat(query.get("total-count-mode").asText()).isEqualTo("none");
+            assertThat(query.at("/sort/0/field").asText()).isEqualTo("productNumber");
+            assertThat(query.at("/sort/0/naturalSorting").asBoolean()).isFalse();
+        });
+        assertThat(requestedQueries)
+                .extracting(query -> query.at("/filter/0/parameters/gt").asText())
+                .containsExactly("", "product-0099", "product-0199");
+    }
+
+    @Test
+    public void keysetSearchRejectsQueriesWithSortings() {
+        var query = new SearchQuery().addSorting(Sorting.byField("name"));
+
+        assertThatThrownBy(() -> adminApiService.searchStream(app, SHOP_ID, "product", query, ProductResult.class,
+                null, SearchKeyset.byField("productNumber", Function.identity()), false))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void keysetRejectsIdFields() {
+        assertThatThrownBy(() -> SearchKeyset.byField("id", Function.identity()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SearchKeyset.byField("orderDateTime", Function.identity())
+                .thenByField("order.customerId", Function.identity()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    public static class ProductResult extends SearchResult<String> {
+    }
+
+    /**
+     * Answers searches with pages of the given number of products, like Shopware does
+     */
+    private Queue<JsonNode> answerSearchesWithProducts(int productCount) {
+        return answerSearchesWithProducts(productCount, productCount);
+    }
+
+    /**
+     * Like {@link #answerSearchesWithProducts(int)}, but reports the given total for exact counts
+     */
+    private Queue<JsonNode> answerSearchesWithProducts(int productCount, int reportedTotal) {
+        Queue<JsonNode> requestedQueries = new ConcurrentLinkedQueue<>();
+        when(restTemplate.postForObject(any(URI.class), any(HttpEntity.class), eq(ProductResult.class)))
+                .thenAnswer(invocation -> {
+                    HttpEntity<?> request = invocation.getArgument(1);
+                    JsonNode query = toJson(request.getBody());
+                    requestedQueries.add(query);
+                    int limit = query.get("limit").asInt();
+                    int offset = (query.get("page").asInt() - 1) * limit;
+                    List<String> data = IntStream.range(offset, Math.min(offset + limit, productCount))
+                            .mapToObj(i -> "product-" + i)
+                            .toList();
+                    boolean exact = query.has("total-count-mode")
+                            && "exact".equals(query.get("total-count-mode").asText());
+                    return OBJECT_MAPPER.convertValue(
+                            Map.of("total", exact ? reportedTotal : data.size(), "data", data), ProductResult.class);
+                });
+        return requestedQueries;
+    }
+
+    private static JsonNode toJson(Object value) {
+        return OBJECT_MAPPER.valueToTree(value);
+    }
+
+    private static HttpClientErrorException unauthorized() {
+        return HttpClientErrorException.create(HttpStatus.UNAUTHORIZED, "Unauthorized", HttpHeaders.EMPTY, null, null);
+    }
+}
@@ -0,0 +1,137 @@
+package de.codebarista.shopware.appserver;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.codebarista.shopware.appserver.service.BulkImportSession;
+import de.codebarista.shopware.appserver.service.SyncBatcher;
+import de.codebarista.shopware.appserver.service.dto.sync.IndexingBehavior;
+import de.codebarista.shopware.appserver.service.dto.sync.SyncResult;
+import de.codebarista.shopware.testutils.TestAppA;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BulkImportSessionTest {
+    private static final String SHOP_ID = "bulk-import-shop";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final TestAppA app = new TestAppA();
+    private final AdminApi adminApi = mock(AdminApi.class);
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void chunksAreSyncedWithoutIndexingAndTheShopIsIndexedOnce() {
+        AtomicInteger syncs = new AtomicInteger();
+        when(adminApi.sync(eq(app), eq(SHOP_ID), any(), eq(SyncResult.class), eq(IndexingBehavior.DISABLE_INDEXING)))
+                .thenAnswer(invocation -> {
+                    syncs.incrementAndGet();
+                    return success();
+                });
+        Queue<SyncBatcher.Progress> progress = new ConcurrentLinkedQueue<>();
+
+        BulkImportSession.Result result;
+        try (var session = createSession().progressListener(progress::add)) {
+            for (int i = 0; i < 5; i++) {
+                session.upsert("product", Map.of("id", String.valueOf(i)));
+            }
+            result = session.complete();
+            assertThat(session.getProgress()).isEqualTo(new SyncBatcher.Progress(5, 5, 3, 0));
+        }
+
+        assertThat(result.successful()).isTrue();
+        assertThat(result.indexed()).isTrue();
+        assertThat(result.indexingDuration().isNegative()).isFalse();
+        assertThat(result.sync().chunks()).isEqualTo(3);
+        assertThat(syncs).hasValue(3);
+        assertThat(progress).map(SyncBatcher.Progress::sentChunks).containsExactly(1, 2, 3);
+        var order = inOrder(adminApi);
+        order.verify(adminApi, times(3)).sync(eq(app), eq(SHOP_ID), any(), eq(SyncResult.class),
+                eq(IndexingBehavior.DISABLE_INDEXING));
+        order.verify(adminApi).triggerIndexing(app, SHOP_ID);
+        verify(adminApi, never()).sync(eq(app), eq(SHOP_ID), any());
+    }
+
+    @Test
+    public void emptySessionDoesNotTriggerIndexing() {
+        BulkImportSession.Result result;
+        try (var session = createSession()) {
+            result = session.complete();
+        }
+
+        assertThat(result.indexed()).isFalse();
+        assertThat(result.successful()).isTrue();
+        verify(adminApi, never()).triggerIndexing(any(), any());
+    }
+
+    @Test
+    public void sessionWithoutIndexingTriggerKeepsQueueIndexing() {
+        when(adminApi.sync(eq(app), eq(SHOP_ID), any())).thenAnswer(invocation -> success());
+        var batcher = new SyncBatcher(adminApi, app, SHOP_ID, OBJECT_MAPPER, executor);
+
+        BulkImportSession.Result result;
+        try (var session = new BulkImportSession(batcher, null, SHOP_ID)) {
+            session.upsert("product", Map.of("id", "1"));
+            result = session.complete();
+        }
+
+        assertThat(result.successful()).isTrue();
+        assertThat(result.indexed()).isFalse();
+        verify(adminApi).sync(eq(app), eq(SHOP_ID), any());
+        verify(adminApi, never()).sync(eq(app), eq(SHOP_ID), any(), eq(SyncResult.class),
+                eq(IndexingBehavior.DISABLE_INDEXING));
+    }
+
+    @Test
+    public void failedIndexingIsReported() {
+        when(adminApi.sync(eq(app), eq(SHOP_ID), any(), eq(SyncResult.class), eq(IndexingBehavior.DISABLE_INDEXING)))
+                .thenAnswer(invocation -> success());
+        var exception = new ResourceAccessException("Read timed out");
+        doThrow(exception).when(adminApi).triggerIndexing(app, SHOP_ID);
+
+        BulkImportSession.Result result;
+        try (var session = createSession()) {
+            session.deleteById("product", "1");
+            result = session.complete();
+            assertThat(session.complete()).isSameAs(result);
+        }
+
+        assertThat(result.successful()).isFalse();
+        assertThat(result.sync().successful()).isTrue();
+        assertThat(result.indexed()).isTrue();
+        assertThat(result.indexingException()).isSameAs(exception);
+        verify(adminApi, times(1)).triggerIndexing(app, SHOP_ID);
+    }
+
+    private BulkImportSession createSession() {
+        var batcher = new SyncBatcher(adminApi, app, SHOP_ID, OBJECT_MAPPER, executor)
+                .maxOperationsPerChunk(2)
+                .parallelism(1);
+        return new BulkImportSession(batcher, () -> adminApi.triggerIndexing(app, SHOP_ID), SHOP_ID);
+    }
+
+    private static SyncResult success() {
+        return OBJECT_MAPPER.convertValue(Map.of("success", true), SyncResult.class);
+    }
+}
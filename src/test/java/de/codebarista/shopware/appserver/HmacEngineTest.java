@@ -0,0 +1,94 @@
+package de.codebarista.shopware.appserver;
+
+import de.codebarista.shopware.appserver.service.HmacEngine;
+import de.codebarista.shopware.testutils.TestHelper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class HmacEngineTest {
+
+    @Test
+    public void signMatchesPlainHmac() {
+        HmacEngine engine = new HmacEngine();
+        byte[] data = "shop-id=abc&timestamp=1703088642".getBytes(StandardCharsets.UTF_8);
+
+        String first = HexFormat.of().formatHex(engine.sign("secret-a", data));
+        String second = HexFormat.of().formatHex(engine.sign("secret-a", data));
+
+        assertThat(first).isEqualTo(TestHelper.hmac256(data, "secret-a"));
+        assertThat(second).isEqualTo(first);
+    }
+
+    @Test
+    public void cachedInstanceIsReusedPerSecret() {
+        HmacEngine engine = new HmacEngine();
+
+        assertThat(engine.mac("secret-a")).isSameAs(engine.mac("secret-a"));
+        assertThat(engine.mac("secret-a")).isNotSameAs(engine.mac("secret-b"));
+    }
+
+    @Test
+    public void leastRecentlyUsedKeyIsDroppedWhenBoundIsReached() {
+        HmacEngine engine = new HmacEngine(2);
+        var macA = engine.mac("secret-a");
+        engine.mac("secret-b");
+        engine.mac("secret-c");
+
+        assertThat(engine.mac("secret-a")).isNotSameAs(macA);
+    }
+
+    @Test
+    public void evictDropsCachedInstances() {
+        HmacEngine engine = new HmacEngine();
+        var mac = engine.mac("secret-a");
+        var otherMac = engine.mac("secret-b");
+
+        engine.evict("secret-a");
+
+        assertThat(engine.mac("secret-a")).isNotSameAs(mac);
+        assertThat(engine.mac("secret-b")).isSameAs(otherMac);
+    }
+
+    @Test
+    public void evictDropsCachedInstancesOfOtherThreads() throws Exception {
+        HmacEngine engine = new HmacEngine();
+        var otherThread = Executors.newSingleThreadExecutor();
+        try {
+            var mac = otherThread.submit(() -> engine.mac("secret-a")).get(5, TimeUnit.SECONDS);
+
+            engine.evict("secret-a");
+
+            assertThat(otherThread.submit(() -> engine.mac("secret-a")).get(5, TimeUnit.SECONDS)).isNotSameAs(mac);
+        } finally {
+            otherThread.shutdownNow();
+        }
+    }
+
+    @Test
+    public void secretsAreSeparatedBetweenThreads() throws InterruptedException {
+        HmacEngine engine = new HmacEngine();
+        var mac = engine.mac("secret-a");
+        var otherThreadMac = new Object[1];
+
+        Thread thread = new Thread(() -> otherThreadMac[0] = engine.mac("secret-a"));
+        thread.start();
+        thread.join();
+
+        assertThat(otherThreadMac[0]).isNotNull().isNotSameAs(mac);
+    }
+
+    @Test
+    public void emptySecretIsRejected() {
+        HmacEngine engine = new HmacEngine();
+
+        assertThatThrownBy(() -> engine.sign("", new byte[0]))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,108 @@
+package de.codebarista.shopware.appserver;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import de.codebarista.shopware.appserver.service.HttpRequestResponseLoggingInterceptor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HttpRequestResponseLoggingInterceptorTest {
+    private static final String RESPONSE_BODY = "{\"access_token\":\"secret-token\",\"expires_in\":600}";
+
+    private final Logger logger = (Logger) LoggerFactory.getLogger("AdminApiHTTPClient");
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    private final MockClientHttpResponse response =
+            new MockClientHttpResponse(RESPONSE_BODY.getBytes(StandardCharsets.UTF_8), HttpStatus.OK);
+    private final ClientHttpRequestExecution execution = (request, body) -> response;
+    private MockClientHttpRequest request;
+
+    @BeforeEach
+    public void setUp() {
+        appender.start();
+        logger.addAppender(appender);
+        request = new MockClientHttpRequest(HttpMethod.POST, URI.create("https://myshop.de/api/oauth/token"));
+        request.getHeaders().add(HttpHeaders.AUTHORIZATION, "Bearer secret-token");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        logger.detachAppender(appender);
+        logger.setLevel(null);
+    }
+
+    @Test
+    public void responseIsLoggedWhileTheCallerReadsIt() throws IOException {
+        logger.setLevel(Level.DEBUG);
+        var interceptor = new HttpRequestResponseLoggingInterceptor(4096, 1.0, List.of());
+        byte[] requestBody = "{\"client_id\":\"key\",\"client_secret\":\"secret\"}".getBytes(StandardCharsets.UTF_8);
+
+        try (var loggedResponse = interceptor.intercept(request, requestBody, execution)) {
+            assertThat(StreamUtils.copyToString(loggedResponse.getBody(), StandardCharsets.UTF_8))
+                    .isEqualTo(RESPONSE_BODY);
+        }
+
+        assertThat(loggedEvents())
+                .doesNotContain("secret-token")
+                .doesNotContain(":\"secret\"")
+                .contains("{\"client_id\":\"key\",\"client_secret\":\"***\"}")
+                .contains("{\"access_token\":\"***\",\"expires_in\":600}");
+    }
+
+    @Test
+    public void onlyTheFirstBytesOfTheResponseAreLogged() throws IOException {
+        logger.setLevel(Level.DEBUG);
+        var interceptor = new HttpRequestResponseLoggingInterceptor(20, 1.0, List.of());
+
+        try (var loggedResponse = interceptor.intercept(request, new byte[0], execution)) {
+            assertThat(StreamUtils.copyToString(loggedResponse.getBody(), StandardCharsets.UTF_8))
+                    .isEqualTo(RESPONSE_BODY);
+        }
+
+        assertThat(loggedEvents())
+                .doesNotContain("secret-token")
+                .contains("{\"access_token\":\"***\"... (" + RESPONSE_BODY.length() + " bytes)");
+    }
+
+    private String loggedEvents() {
+        return appender.list.stream()
+                .map(event -> event.getFormattedMessage() + " " + event.getKeyValuePairs())
+                .collect(Collectors.joining("\n"));
+    }
+
+    @Test
+    public void nothingIsCapturedIfDebugIsDisabled() throws IOException {
+        logger.setLevel(Level.INFO);
+        var interceptor = new HttpRequestResponseLoggingInterceptor();
+
+        assertThat(interceptor.intercept(request, new byte[0], execution)).isSameAs(response);
+        assertThat(appender.list).isEmpty();
+    }
+
+    @Test
+    public void onlySampledShopsAreLogged() throws IOException {
+        logger.setLevel(Level.DEBUG);
+        var interceptor = new HttpRequestResponseLoggingInterceptor(4096, 1.0, List.of("othershop.de"));
+
+        assertThat(interceptor.intercept(request, new byte[0], execution)).isSameAs(response);
+        assertThat(appender.list).isEmpty();
+    }
+}
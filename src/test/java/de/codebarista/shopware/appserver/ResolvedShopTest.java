@@ -0,0 +1,76 @@
+package de.codebarista.shopware.appserver;
+
+import de.codebarista.shopware.appserver.config.AppServerProperties;
+import de.codebarista.shopware.appserver.model.ShopwareShopEntity;
+import de.codebarista.shopware.appserver.model.ShopwareShopEntityRepository;
+import de.codebarista.shopware.appserver.service.ResolvedShop;
+import de.codebarista.shopware.appserver.service.ShopManagementService;
+import de.codebarista.shopware.testutils.TestAppA;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ResolvedShopTest {
+    private static final String SHOP_ID = "resolved-shop";
+
+    private final TestAppA app = new TestAppA();
+    private ShopwareShopEntityRepository repository;
+    private ShopManagementService shopManagementService;
+    private ShopwareShopEntity shop;
+
+    @BeforeEach
+    public void setUp() {
+        repository = mock(ShopwareShopEntityRepository.class);
+        shopManagementService = new ShopManagementService(repository, new AppServerProperties());
+        shop = new ShopwareShopEntity(app.getAppKey(), SHOP_ID);
+
+        var authentication = new UsernamePasswordAuthenticationToken(SHOP_ID, null, List.of());
+        authentication.setDetails(new ResolvedShop(app.getAppKey(), shop));
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void authenticatedShopIsReturnedWithoutQueryingTheDatabase() {
+        assertThat(shopManagementService.getShopById(app, SHOP_ID))
+                .hasValueSatisfying(found -> assertThat(found).usingRecursiveComparison().isEqualTo(shop));
+        assertThat(shopManagementService.getShopByIdOrThrow(app, SHOP_ID).getShopId()).isEqualTo(SHOP_ID);
+
+        verify(repository, never()).findByAppKeyAndShopId(app.getAppKey(), SHOP_ID);
+        assertThat(shopManagementService.getShopCacheStatistics().misses()).isZero();
+    }
+
+    @Test
+    public void otherShopsAreLoadedFromTheDatabase() {
+        var otherShop = new ShopwareShopEntity(app.getAppKey(), "other-shop");
+        when(repository.findByAppKeyAndShopId(app.getAppKey(), "other-shop")).thenReturn(Optional.of(otherShop));
+
+        assertThat(shopManagementService.getShopById(app, "other-shop"))
+                .hasValueSatisfying(found -> assertThat(found).usingRecursiveComparison().isEqualTo(otherShop));
+    }
+
+    @Test
+    public void deletedShopIsForgotten() {
+        when(repository.findByAppKeyAndShopId(app.getAppKey(), SHOP_ID)).thenReturn(Optional.of(shop));
+
+        shopManagementService.deleteShop(app, SHOP_ID, "https://myshop.de");
+
+        verify(repository).delete(shop);
+        assertThat(ResolvedShop.find(app.getAppKey(), SHOP_ID)).isEmpty();
+    }
+}
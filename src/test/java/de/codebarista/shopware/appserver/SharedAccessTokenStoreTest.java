@@ -0,0 +1,126 @@
+package de.codebarista.shopware.appserver;
+
+import de.codebarista.shopware.appserver.config.AppServerProperties;
+import de.codebarista.shopware.appserver.model.ShopwareAccessTokenEntity;
+import de.codebarista.shopware.appserver.model.ShopwareAccessTokenEntityRepository;
+import de.codebarista.shopware.appserver.model.ShopwareShopEntity;
+import de.codebarista.shopware.appserver.service.SharedAccessTokenStore;
+import de.codebarista.shopware.appserver.service.ShopChangeListener;
+import de.codebarista.shopware.appserver.service.ShopManagementService;
+import de.codebarista.shopware.appserver.service.ShopwareAccessTokenClientService;
+import de.codebarista.shopware.appserver.service.dto.auth.ShopwareAdminApiAccessTokenDto;
+import de.codebarista.shopware.testutils.TestAppA;
+import de.codebarista.shopware.testutils.WebServerTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@WebServerTest
+public class SharedAccessTokenStoreTest {
+    private static final String SHOP_ID = "shared-token-shop";
+
+    private final TestAppA app = new TestAppA();
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+
+    @Autowired
+    private ShopwareAccessTokenEntityRepository shopwareAccessTokenEntityRepository;
+
+    private SharedAccessTokenStore storeOfNodeA;
+    private SharedAccessTokenStore storeOfNodeB;
+    private ShopwareAccessTokenClientService nodeA;
+    private ShopwareAccessTokenClientService nodeB;
+    private final List<ShopChangeListener> shopChangeListeners = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        var shop = new ShopwareShopEntity(app.getAppKey(), SHOP_ID);
+        shop.setPendingRegistration("secret", "https://myshop.de");
+        shop.confirmPendingRegistrationAndAddShopApiSecrets("apiKey", "apiSecret");
+        // Shared tokens are stored with millisecond precision and must be issued after the confirmation
+        Thread.sleep(5);
+        var shopManagementService = mock(ShopManagementService.class);
+        when(shopManagementService.getShopByIdOrThrow(app, SHOP_ID)).thenReturn(shop);
+        doAnswer(invocation -> shopChangeListeners.add(invocation.getArgument(0)))
+                .when(shopManagementService).addShopChangeListener(any());
+
+        var restTemplate = mock(RestTemplate.class);
+        when(restTemplate.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+                eq(ShopwareAdminApiAccessTokenDto.class)))
+                .thenAnswer(invocation -> ResponseEntity.ok(
+                        new ShopwareAdminApiAccessTokenDto("Bearer", 600L, "token-" + tokenRequests.incrementAndGet())));
+
+        var properties = new AppServerProperties();
+        storeOfNodeA = new SharedAccessTokenStore(shopwareAccessTokenEntityRepository);
+        storeOfNodeB = new SharedAccessTokenStore(shopwareAccessTokenEntityRepository);
+        nodeA = new ShopwareAccessTokenClientService(restTemplate, shopManagementService, properties, storeOfNodeA);
+        nodeB = new ShopwareAccessTokenClientService(restTemplate, shopManagementService, properties, storeOfNodeB);
+    }
+
+    @Test
+    public void tokenRequestedByOneNodeIsUsedByOtherNodes() {
+        assertThat(nodeA.getAccessToken(app, SHOP_ID)).isEqualTo("token-1");
+        assertThat(nodeB.getAccessToken(app, SHOP_ID)).isEqualTo("token-1");
+
+        assertThat(tokenRequests).hasValue(1);
+        assertThat(shopwareAccessTokenEntityRepository.findAll())
+                .singleElement()
+                .extracting(ShopwareAccessTokenEntity::getAccessToken)
+                .asString()
+                .isNotBlank()
+                .doesNotContain("token-1");
+    }
+
+    @Test
+    public void onlyOneNodeHoldsTheLease() {
+        assertThat(storeOfNodeA.tryAcquireLease(app, SHOP_ID)).isTrue();
+        assertThat(storeOfNodeB.tryAcquireLease(app, SHOP_ID)).isFalse();
+
+        storeOfNodeA.releaseLease(app, SHOP_ID);
+
+        assertThat(storeOfNodeB.tryAcquireLease(app, SHOP_ID)).isTrue();
+    }
+
+    @Test
+    public void sharedTokenIsOnlyRemovedByTheNodeThatChangedTheShop() {
+        assertThat(nodeA.getAccessToken(app, SHOP_ID)).isEqualTo("token-1");
+        assertThat(nodeB.getAccessToken(app, SHOP_ID)).isEqualTo("token-1");
+        var listenerOfNodeA = shopChangeListeners.get(0);
+        var listenerOfNodeB = shopChangeListeners.get(1);
+
+        // Node B receives the change of node A from the feed after node A stored a new token
+        listenerOfNodeA.onShopChanged(app.getAppKey(), SHOP_ID, true);
+        assertThat(nodeA.getAccessToken(app, SHOP_ID)).isEqualTo("token-2");
+        listenerOfNodeB.onShopChanged(app.getAppKey(), SHOP_ID, false);
+
+        assertThat(storeOfNodeB.find(app, SHOP_ID)).isNotNull();
+        assertThat(nodeB.getAccessToken(app, SHOP_ID)).isEqualTo("token-2");
+        assertThat(tokenRequests).hasValue(2);
+    }
+
+    @Test
+    public void rejectedTokenIsDiscardedForAllNodes() {
+        assertThat(nodeA.getAccessToken(app, SHOP_ID)).isEqualTo("token-1");
+
+        nodeA.evictRejectedAccessToken(app, SHOP_ID, "token-1");
+
+        assertThat(nodeB.getAccessToken(app, SHOP_ID)).isEqualTo("token-2");
+        assertThat(nodeA.getAccessToken(app, SHOP_ID)).isEqualTo("token-2");
+        assertThat(tokenRequests).hasValue(2);
+    }
+}
@@ -0,0 +1,107 @@
+package de.codebarista.shopware.appserver;
+
+import de.codebarista.shopware.appserver.model.ShopwareShopEntityRepository;
+import de.codebarista.shopware.appserver.service.ShopActivityTracker;
+import de.codebarista.shopware.appserver.service.ShopManagementService;
+import de.codebarista.shopware.testutils.TestAppA;
+import de.codebarista.shopware.testutils.WebServerTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@WebServerTest
+public class ShopActivityTrackerTest {
+    private static final String SHOP_ID = "test1234";
+
+    @Autowired
+    private ShopwareShopEntityRepository shopwareShopEntityRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ShopManagementService shopManagementService;
+
+    @Test
+    @Sql("/insert_testshop_for_testapp_a.sql")
+    public void usageIsWrittenOnFlush() {
+        var tracker = new ShopActivityTracker(shopwareShopEntityRepository, transactionManager, Duration.ofHours(1), 10);
+        var shop = shopwareShopEntityRepository.findByAppKeyAndShopId(TestAppA.APP_KEY, SHOP_ID).orElseThrow();
+        assertThat(shop.getLastUsedAt()).isNull();
+
+        tracker.recordUsage(shop);
+        tracker.recordUsage(shop);
+
+        assertThat(hasLastUsedAt()).isFalse();
+        assertThat(tracker.flush()).isEqualTo(1);
+        assertThat(hasLastUsedAt()).isTrue();
+        assertThat(tracker.flush()).isZero();
+    }
+
+    @Test
+    @Sql("/insert_testshop_for_testapp_a.sql")
+    public void usageIsWrittenInTheBackgroundOnceTheThresholdIsReached() throws InterruptedException {
+        var tracker = new ShopActivityTracker(shopwareShopEntityRepository, transactionManager, Duration.ofHours(1), 1);
+        var shop = shopwareShopEntityRepository.findByAppKeyAndShopId(TestAppA.APP_KEY, SHOP_ID).orElseThrow();
+        tracker.start();
+        try {
+            tracker.recordUsage(shop);
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (!hasLastUsedAt() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(hasLastUsedAt()).isTrue();
+            assertThat(tracker.flush()).isZero();
+        } finally {
+            tracker.stop();
+        }
+    }
+
+    @Test
+    @Sql("/insert_testshop_for_testapp_a.sql")
+    public void flushInvalidatesTheCachedShop() {
+        var tracker = new ShopActivityTracker(shopwareShopEntityRepository, transactionManager, Duration.ofHours(1), 10,
+                shopManagementService);
+        var app = new TestAppA();
+        var shop = shopManagementService.getShopByIdOrThrow(app, SHOP_ID);
+        assertThat(shop.getLastUsedAt()).isNull();
+
+        tracker.recordUsage(shop);
+        tracker.flush();
+
+        assertThat(shopManagementService.getShopByIdOrThrow(app, SHOP_ID).getLastUsedAt()).isNotNull();
+    }
+
+    @Test
+    @Sql("/insert_testshop_for_testapp_a.sql")
+    public void savingAShopDoesNotOverwriteTheLastUsage() {
+        var tracker = new ShopActivityTracker(shopwareShopEntityRepository, transactionManager, Duration.ofHours(1), 10);
+        var staleShop = shopwareShopEntityRepository.findByAppKeyAndShopId(TestAppA.APP_KEY, SHOP_ID).orElseThrow();
+        tracker.recordUsage(staleShop);
+        tracker.flush();
+
+        staleShop.setReRegistrationRequiresShopSignature(true);
+        shopwareShopEntityRepository.save(staleShop);
+
+        assertThat(hasLastUsedAt()).isTrue();
+    }
+
+    @Test
+    public void invalidConfigurationIsRejected() {
+        assertThatThrownBy(() -> new ShopActivityTracker(shopwareShopEntityRepository, transactionManager, Duration.ZERO, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ShopActivityTracker(shopwareShopEntityRepository, transactionManager, Duration.ofMinutes(1), 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private boolean hasLastUsedAt() {
+        return shopwareShopEntityRepository.findByAppKeyAndShopId(TestAppA.APP_KEY, SHOP_ID)
+                .orElseThrow()
+                .getLastUsedAt() != null;
+    }
+}
@@ -0,0 +1,78 @@
+package de.codebarista.shopware.appserver;
+
+import de.codebarista.shopware.appserver.config.AppServerProperties;
+import de.codebarista.shopware.appserver.model.ShopwareShopChangeEntityRepository;
+import de.codebarista.shopware.appserver.model.ShopwareShopEntityRepository;
+import de.codebarista.shopware.appserver.service.ShopChangeFeed;
+import de.codebarista.shopware.appserver.service.ShopManagementService;
+import de.codebarista.shopware.testutils.TestAppA;
+import de.codebarista.shopware.testutils.WebServerTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+@WebServerTest
+public class ShopChangeFeedTest {
+    private static final String SHOP_ID = "test1234";
+
+    private final TestAppA app = new TestAppA();
+
+    @Autowired
+    private ShopManagementService shopManagementService;
+    @Autowired
+    private ShopwareShopEntityRepository shopwareShopEntityRepository;
+    @Autowired
+    private ShopwareShopChangeEntityRepository shopwareShopChangeEntityRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    @Sql("/insert_testshop_for_testapp_a.sql")
+    public void reRegistrationOnOneNodeInvalidatesTheShopOnOtherNodes() {
+        var otherNode = new ShopManagementService(shopwareShopEntityRepository, new AppServerProperties(), null,
+                new ShopChangeFeed(shopwareShopChangeEntityRepository));
+        otherNode.pollShopChanges();
+        var cachedShop = otherNode.getShopByIdOrThrow(app, SHOP_ID);
+        assertThat(cachedShop.getPendingShopSecret()).isNull();
+
+        String secret = shopManagementService.registerShop(app, SHOP_ID, "https://myshopurl.test", null, false);
+
+        assertThat(otherNode.getShopByIdOrThrow(app, SHOP_ID).getPendingShopSecret()).isNull();
+        assertThat(otherNode.pollShopChanges()).isEqualTo(1);
+        assertThat(otherNode.getShopByIdOrThrow(app, SHOP_ID).getPendingShopSecret()).isEqualTo(secret);
+        assertThat(otherNode.pollShopChanges()).isZero();
+    }
+
+    @Test
+    @Sql("/insert_testshop_for_testapp_a.sql")
+    public void ownChangesAreNotReceivedAgain() {
+        shopManagementService.pollShopChanges();
+
+        shopManagementService.deleteShop(app, SHOP_ID, "https://myshopurl.test");
+
+        assertThat(shopManagementService.pollShopChanges()).isZero();
+        assertThat(shopwareShopChangeEntityRepository.findLatestVersion()).isPresent();
+    }
+
+    @Test
+    @Sql("/insert_testshop_for_testapp_a.sql")
+    public void shopIsNotChangedIfTheChangeCannotBePublished() {
+        var shopChangeFeed = mock(ShopChangeFeed.class);
+        doThrow(new IllegalStateException("feed unavailable")).when(shopChangeFeed).publish(any(), any());
+        var node = new ShopManagementService(shopwareShopEntityRepository, new AppServerProperties(), null,
+                shopChangeFeed, transactionManager);
+
+        assertThatThrownBy(() -> node.registerShop(app, SHOP_ID, "https://myshopurl.test", null, false))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(shopwareShopEntityRepository.findByAppKeyAndShopId(app.getAppKey(), SHOP_ID))
+                .hasValueSatisfying(shop -> assertThat(shop.getPendingShopSecret()).isNull());
+    }
+}
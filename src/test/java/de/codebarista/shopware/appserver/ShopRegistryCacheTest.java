@@ -0,0 +1,133 @@
+package de.codebarista.shopware.appserver;
+
+import de.codebarista.shopware.appserver.config.AppServerProperties;
+import de.codebarista.shopware.appserver.model.ShopwareShopEntity;
+import de.codebarista.shopware.appserver.model.ShopwareShopEntityRepository;
+import de.codebarista.shopware.appserver.service.ShopManagementService;
+import de.codebarista.shopware.appserver.service.ShopRegistryCache;
+import de.codebarista.shopware.testutils.TestAppA;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ShopRegistryCacheTest {
+    private static final String SHOP_ID = "cached-shop";
+    private static final String SHOP_URL = "https://myshop.de";
+
+    private final TestAppA app = new TestAppA();
+    private ShopwareShopEntityRepository repository;
+    private ShopManagementService shopManagementService;
+    private ShopwareShopEntity shop;
+
+    @BeforeEach
+    public void setUp() {
+        repository = mock(ShopwareShopEntityRepository.class);
+        shopManagementService = new ShopManagementService(repository, new AppServerProperties());
+        shop = new ShopwareShopEntity(app.getAppKey(), SHOP_ID);
+        when(repository.findByAppKeyAndShopId(app.getAppKey(), SHOP_ID)).thenReturn(Optional.of(shop));
+        when(repository.findByAppKeyAndShopHost(app.getAppKey(), "myshop.de")).thenReturn(List.of(shop));
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    public void shopIsLoadedFromTheDatabaseOnlyOnce() {
+        assertThat(shopManagementService.getShopById(app, SHOP_ID)).hasValueSatisfying(this::isCopyOfShop);
+        assertThat(shopManagementService.getShopById(app, SHOP_ID)).hasValueSatisfying(this::isCopyOfShop);
+        assertThat(shopManagementService.getShopByUrl(app, SHOP_URL)).hasValueSatisfying(this::isCopyOfShop);
+        assertThat(shopManagementService.getShopByUrl(app, SHOP_URL)).hasValueSatisfying(this::isCopyOfShop);
+
+        verify(repository, times(1)).findByAppKeyAndShopId(app.getAppKey(), SHOP_ID);
+        verify(repository, times(1)).findByAppKeyAndShopHost(app.getAppKey(), "myshop.de");
+        assertThat(shopManagementService.getShopCacheStatistics())
+                .isEqualTo(new ShopRegistryCache.Statistics(2, 2, 1));
+    }
+
+    @Test
+    public void modifyingAReturnedShopDoesNotAffectTheCache() {
+        shopManagementService.getShopByIdOrThrow(app, SHOP_ID).setShopSecret("modified");
+
+        assertThat(shopManagementService.getShopByIdOrThrow(app, SHOP_ID).getShopSecret()).isEmpty();
+        verify(repository, times(1)).findByAppKeyAndShopId(app.getAppKey(), SHOP_ID);
+    }
+
+    @Test
+    public void unknownShopsAreNotCached() {
+        assertThat(shopManagementService.getShopById(app, "unknown")).isEmpty();
+        assertThat(shopManagementService.getShopById(app, "unknown")).isEmpty();
+
+        verify(repository, times(2)).findByAppKeyAndShopId(app.getAppKey(), "unknown");
+    }
+
+    @Test
+    public void registrationInvalidatesTheShop() {
+        shopManagementService.getShopById(app, SHOP_ID);
+        shopManagementService.getShopByUrl(app, SHOP_URL);
+
+        shopManagementService.registerShop(app, SHOP_ID, SHOP_URL, null, false);
+        shopManagementService.getShopById(app, SHOP_ID);
+        shopManagementService.getShopByUrl(app, SHOP_URL);
+
+        // one lookup for the cache, one for the registration, one after the invalidation
+        verify(repository, times(3)).findByAppKeyAndShopId(app.getAppKey(), SHOP_ID);
+        verify(repository, times(2)).findByAppKeyAndShopHost(app.getAppKey(), "myshop.de");
+    }
+
+    @Test
+    public void deletionInvalidatesTheShop() {
+        shopManagementService.getShopById(app, SHOP_ID);
+
+        shopManagementService.deleteShop(app, SHOP_ID, SHOP_URL);
+        when(repository.findByAppKeyAndShopId(app.getAppKey(), SHOP_ID)).thenReturn(Optional.empty());
+
+        assertThat(shopManagementService.getShopById(app, SHOP_ID)).isEmpty();
+        assertThat(shopManagementService.getShopCacheStatistics().size()).isZero();
+    }
+
+    @Test
+    public void lookupStartedBeforeInvalidationIsNotCached() {
+        var cache = new ShopRegistryCache(10);
+
+        cache.getById(app.getAppKey(), SHOP_ID, () -> {
+            cache.invalidate(app.getAppKey(), SHOP_ID);
+            return shop;
+        });
+
+        assertThat(cache.getStatistics().size()).isZero();
+    }
+
+    @Test
+    public void leastRecentlyUsedShopIsEvicted() {
+        var cache = new ShopRegistryCache(1);
+        var otherShop = new ShopwareShopEntity(app.getAppKey(), "other-shop");
+
+        cache.getById(app.getAppKey(), SHOP_ID, () -> shop);
+        cache.getById(app.getAppKey(), "other-shop", () -> otherShop);
+
+        assertThat(cache.getById(app.getAppKey(), SHOP_ID, () -> null)).isNull();
+        assertThat(cache.getStatistics().size()).isEqualTo(1);
+    }
+
+    @Test
+    public void zeroSizeDisablesTheCache() {
+        var cache = new ShopRegistryCache(0);
+
+        cache.getById(app.getAppKey(), SHOP_ID, () -> shop);
+
+        assertThat(cache.getStatistics().size()).isZero();
+        assertThatThrownBy(() -> new ShopRegistryCache(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void isCopyOfShop(ShopwareShopEntity cachedShop) {
+        assertThat(cachedShop).isNotSameAs(shop).usingRecursiveComparison().isEqualTo(shop);
+    }
+}
@@ -0,0 +1,202 @@
+package de.codebarista.shopware.appserver;
+
+import de.codebarista.shopware.appserver.config.AppServerProperties;
+import de.codebarista.shopware.appserver.exception.ShopwareAccessException;
+import de.codebarista.shopware.appserver.model.ShopwareShopEntity;
+import de.codebarista.shopware.appserver.service.ShopManagementService;
+import de.codebarista.shopware.appserver.service.ShopwareAccessTokenClientService;
+import de.codebarista.shopware.appserver.service.dto.auth.ShopwareAdminApiAccessTokenDto;
+import de.codebarista.shopware.testutils.TestAppA;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ShopwareAccessTokenClientServiceTest {
+    private static final String SHOP_ID = "token-shop";
+    private static final int CALLERS = 4;
+
+    private final TestAppA app = new TestAppA();
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+    private final CountDownLatch tokenRequestStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseTokenRequest = new CountDownLatch(1);
+    private RestTemplate restTemplate;
+    private ShopManagementService shopManagementService;
+    private ShopwareAccessTokenClientService tokenClientService;
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp() {
+        var shop = new ShopwareShopEntity(app.getAppKey(), SHOP_ID);
+        shop.setPendingRegistration("secret", "https://myshop.de");
+        shop.confirmPendingRegistrationAndAddShopApiSecrets("apiKey", "apiSecret");
+        shopManagementService = mock(ShopManagementService.class);
+        when(shopManagementService.getShopByIdOrThrow(app, SHOP_ID)).thenReturn(shop);
+
+        restTemplate = mock(RestTemplate.class);
+        tokenClientService = new ShopwareAccessTokenClientService(restTemplate, shopManagementService, new AppServerProperties());
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentCallersShareOneTokenRequest() throws Exception {
+        when(restTemplate.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+                eq(ShopwareAdminApiAccessTokenDto.class)))
+                .thenAnswer(invocation -> {
+                    blockTokenRequest();
+                    return ResponseEntity.ok(new ShopwareAdminApiAccessTokenDto("Bearer", 600L, "token"));
+                });
+
+        List<Future<String>> callers = startConcurrentCallers();
+
+        for (Future<String> caller : callers) {
+            assertThat(caller.get(5, TimeUnit.SECONDS)).isEqualTo("token");
+        }
+        assertThat(tokenRequests).hasValue(1);
+        assertThat(tokenClientService.getAccessToken(app, SHOP_ID)).isEqualTo("token");
+        assertThat(tokenRequests).hasValue(1);
+    }
+
+    @Test
+    public void failedTokenRequestFailsAllCallersAndIsNotCached() throws Exception {
+        when(restTemplate.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+                eq(ShopwareAdminApiAccessTokenDto.class)))
+                .thenAnswer(invocation -> {
+                    blockTokenRequest();
+                    throw new ResourceAccessException("Connection refused");
+                });
+
+        List<Future<String>> callers = startConcurrentCallers();
+
+        for (Future<String> caller : callers) {
+            assertThatThrownBy(() -> caller.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(ShopwareAccessException.class);
+        }
+        assertThat(tokenRequests).hasValue(1);
+        assertThatThrownBy(() -> tokenClientService.getAccessToken(app, SHOP_ID))
+                .isInstanceOf(ShopwareAccessException.class);
+        assertThat(tokenRequests).hasValue(2);
+    }
+
+    @Test
+    public void activeShopsAreRenewedAheadOfTime() throws Exception {
+        var properties = new AppServerProperties();
+        properties.setAccessTokenRefreshAheadEnabled(true);
+        tokenClientService = new ShopwareAccessTokenClientService(restTemplate, shopManagementService, properties);
+        when(restTemplate.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+                eq(ShopwareAdminApiAccessTokenDto.class)))
+                .thenAnswer(invocation -> ResponseEntity.ok(
+                        new ShopwareAdminApiAccessTokenDto("Bearer", 1L, "token-" + tokenRequests.incrementAndGet())));
+
+        try {
+            assertThat(tokenClientService.getAccessToken(app, SHOP_ID)).isEqualTo("token-1");
+
+            // Renewed after 500 to 700 ms, before the token becomes stale after 750 ms
+            long deadline = System.currentTimeMillis() + 2000;
+            while (tokenRequests.get() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(tokenRequests).hasValue(2);
+            assertThat(tokenClientService.getAccessToken(app, SHOP_ID)).isEqualTo("token-2");
+            assertThat(tokenRequests).hasValue(2);
+        } finally {
+            tokenClientService.close();
+        }
+    }
+
+    @Test
+    public void leastRecentlyUsedTokenIsEvictedAndStatisticsAreRecorded() throws Exception {
+        var properties = new AppServerProperties();
+        properties.setAccessTokenCacheMaxSize(2);
+        tokenClientService = new ShopwareAccessTokenClientService(restTemplate, shopManagementService, properties);
+        for (String shopId : List.of("shop-a", "shop-b", "shop-c")) {
+            var shop = new ShopwareShopEntity(app.getAppKey(), shopId);
+            shop.setPendingRegistration("secret", "https://myshop.de");
+            shop.confirmPendingRegistrationAndAddShopApiSecrets("apiKey", "apiSecret");
+            when(shopManagementService.getShopByIdOrThrow(app, shopId)).thenReturn(shop);
+        }
+        when(restTemplate.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+                eq(ShopwareAdminApiAccessTokenDto.class)))
+                .thenAnswer(invocation -> ResponseEntity.ok(
+                        new ShopwareAdminApiAccessTokenDto("Bearer", 600L, "token-" + tokenRequests.incrementAndGet())));
+
+        // Access times are tracked in milliseconds, so the calls must not happen within the same millisecond
+        for (String shopId : List.of("shop-a", "shop-b", "shop-a", "shop-c")) {
+            tokenClientService.getAccessToken(app, shopId);
+            Thread.sleep(5);
+        }
+
+        // shop-b has been used least recently
+        assertThat(tokenClientService.getAccessToken(app, "shop-a")).isEqualTo("token-1");
+        assertThat(tokenClientService.getAccessToken(app, "shop-b")).isEqualTo("token-4");
+
+        var statistics = tokenClientService.getCacheStatistics();
+        assertThat(statistics.hits()).isEqualTo(2);
+        assertThat(statistics.misses()).isEqualTo(4);
+        assertThat(statistics.evictions()).isEqualTo(2);
+        assertThat(statistics.size()).isEqualTo(2);
+        assertThat(statistics.tokenRequests()).isEqualTo(4);
+        assertThat(statistics.maxTokenRequestLatency()).isGreaterThanOrEqualTo(statistics.averageTokenRequestLatency());
+    }
+
+    @Test
+    public void invalidatedTokenIsRequestedAgain() {
+        when(restTemplate.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+                eq(ShopwareAdminApiAccessTokenDto.class)))
+                .thenAnswer(invocation -> ResponseEntity.ok(
+                        new ShopwareAdminApiAccessTokenDto("Bearer", 600L, "token-" + tokenRequests.incrementAndGet())));
+
+        assertThat(tokenClientService.getAccessToken(app, SHOP_ID)).isEqualTo("token-1");
+        tokenClientService.invalidate(app.getAppKey(), SHOP_ID);
+
+        assertThat(tokenClientService.getAccessToken(app, SHOP_ID)).isEqualTo("token-2");
+        assertThat(tokenClientService.getCacheStatistics().size()).isEqualTo(1);
+    }
+
+    private List<Future<String>> startConcurrentCallers() throws InterruptedException {
+        List<Future<String>> callers = new ArrayList<>();
+        callers.add(executor.submit(() -> tokenClientService.getAccessToken(app, SHOP_ID)));
+        assertThat(tokenRequestStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i < CALLERS; i++) {
+            callers.add(executor.submit(() -> tokenClientService.getAccessToken(app, SHOP_ID)));
+        }
+        // Give the other callers time to join the pending request
+        Thread.sleep(100);
+        releaseTokenRequest.countDown();
+        return callers;
+    }
+
+    private void blockTokenRequest() throws InterruptedException {
+        tokenRequests.incrementAndGet();
+        tokenRequestStarted.countDown();
+        releaseTokenRequest.await(5, TimeUnit.SECONDS);
+    }
+}
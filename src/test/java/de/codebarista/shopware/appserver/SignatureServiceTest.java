@@ -5,9 +5,11 @@ import de.codebarista.shopware.appserver.service.SignatureService;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.lang.management.ManagementFactory;
 import java.nio.charset.StandardCharsets;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 public class SignatureServiceTest {
     public static final String APP_SECRET = "mysecret";
@@ -40,4 +42,41 @@ public class SignatureServiceTest {
 
         assertThat(signatureService.verifySignature(query.getBytes(StandardCharsets.UTF_8), APP_SECRET, shopwareShopSignature)).isTrue();
     }
+
+    @Test
+    public void verifySignatureRejectsSignatureWithWrongLengthOrCase() {
+        byte[] message = "data".getBytes(StandardCharsets.UTF_8);
+        String signature = signatureService.calculateSignature("data", APP_SECRET);
+
+        assertThat(signatureService.verifySignature(message, APP_SECRET, signature)).isTrue();
+        assertThat(signatureService.verifySignature(message, APP_SECRET, signature.substring(2))).isFalse();
+        assertThat(signatureService.verifySignature(message, APP_SECRET, signature + "00")).isFalse();
+        assertThat(signatureService.verifySignature(message, APP_SECRET, signature.toUpperCase())).isFalse();
+        assertThat(signatureService.verifySignature(message, APP_SECRET, "zz" + signature.substring(2))).isFalse();
+    }
+
+    @Test
+    public void verifySignatureAllocatesOnlyTheDigest() {
+        var threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled());
+
+        byte[] message = "x".repeat(4096).getBytes(StandardCharsets.UTF_8);
+        String signature = signatureService.calculateSignature("x".repeat(4096), APP_SECRET);
+        for (int i = 0; i < 1_000; i++) {
+            signatureService.verifySignature(message, APP_SECRET, signature);
+        }
+
+        int calls = 10_000;
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        boolean allValid = true;
+        for (int i = 0; i < calls; i++) {
+            allValid &= signatureService.verifySignature(message, APP_SECRET, signature);
+        }
+        long allocatedPerCall = (threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore) / calls;
+
+        assertThat(allValid).isTrue();
+        // The 32 byte digest is an array of 48 bytes including the object header
+        assertThat(allocatedPerCall).isLessThanOrEqualTo(64);
+    }
 }
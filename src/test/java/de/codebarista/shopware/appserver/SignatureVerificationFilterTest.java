@@ -23,6 +23,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 public class SignatureVerificationFilterTest {
 
     private static final String ACTION_URL = "/shopware/api/v1/action";
+    private static final String EVENT_URL = "/shopware/api/v1/event";
     private static final String CONFIRM_URL = "/shopware/api/v1/registration/confirm";
     private static final TestAppA APP = new TestAppA();
     private static final String HOST_HEADER = APP.getAppKey() + ".app-backend.de";
@@ -53,6 +54,32 @@ public class SignatureVerificationFilterTest {
         assertThat(response).extracting("payload.message").isEqualTo("happy-post");
     }
 
+    @Test
+    public void postSucceedsWithSourceAfterLargePayload() {
+        StringBuilder payload = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            if (i > 0) {
+                payload.append(',');
+            }
+            payload.append(String.format(
+                    "{\"entity\":\"product\",\"operation\":\"update\",\"primaryKey\":\"p%d\",\"updatedFields\":[\"stock\",\"shopId\"]}", i));
+        }
+        byte[] body = String.format(
+                "{\"data\":{\"payload\":[%s],\"event\":\"product.written\"},\"source\":{\"url\":\"%s\",\"appVersion\":\"1.0.0\",\"shopId\":\"%s\",\"eventId\":\"e4ent1d\"},\"timestamp\":\"1702212669\"}",
+                payload, SHOP_URL, SHOP_ID).getBytes(StandardCharsets.UTF_8);
+        String signature = TestHelper.hmac256(body, shopSecret);
+
+        webTestClient.post()
+                .uri(EVENT_URL)
+                .header(HttpHeaders.HOST, HOST_HEADER)
+                .header("shopware-shop-signature", signature)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+    }
+
     @Test
     public void getSucceedsWithValidShopSignature() {
         String query = "shop-id=" + SHOP_ID + "&shop-url=" + SHOP_URL + "&timestamp=1706456295";
@@ -200,6 +227,24 @@ public class SignatureVerificationFilterTest {
                 .isUnauthorized();
     }
 
+    @Test
+    public void postFailsWithNullSource() {
+        for (String url : new String[]{ACTION_URL, EVENT_URL}) {
+            byte[] body = "{\"source\": null, \"data\": {}}".getBytes(StandardCharsets.UTF_8);
+            String signature = TestHelper.hmac256(body, shopSecret);
+
+            webTestClient.post()
+                    .uri(url)
+                    .header(HttpHeaders.HOST, HOST_HEADER)
+                    .header("shopware-shop-signature", signature)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(body)
+                    .exchange()
+                    .expectStatus()
+                    .isUnauthorized();
+        }
+    }
+
     @Test
     public void postFailsWithSourceMissingShopId() {
         byte[] body = "{\"source\":{\"url\": \"https://myshop.de\"}}".getBytes(StandardCharsets.UTF_8);
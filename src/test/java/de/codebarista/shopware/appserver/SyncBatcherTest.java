@@ -0,0 +1,182 @@
+package de.codebarista.shopware.appserver;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.codebarista.shopware.appserver.service.SyncBatcher;
+import de.codebarista.shopware.appserver.service.dto.sync.SyncResult;
+import de.codebarista.shopware.testutils.TestAppA;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SyncBatcherTest {
+    private static final String SHOP_ID = "sync-batcher-shop";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final TestAppA app = new TestAppA();
+    private final AdminApi adminApi = mock(AdminApi.class);
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final Queue<JsonNode> sentChunks = new ConcurrentLinkedQueue<>();
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void operationsAreSentInChunksInTheirOrder() {
+        answerSyncs(() -> success());
+
+        SyncBatcher.Result result;
+        try (var batcher = createBatcher().maxOperationsPerChunk(3).parallelism(1)) {
+            batcher.upsert("product", Map.of("id", "1"))
+                    .upsert("product", Map.of("id", "2"))
+                    .deleteById("product", "3")
+                    .upsert("category", Map.of("id", "4"));
+            result = batcher.complete();
+        }
+
+        assertThat(result.successful()).isTrue();
+        assertThat(result.chunks()).isEqualTo(2);
+        assertThat(result.operations()).isEqualTo(4);
+        assertThat(sentChunks).map(JsonNode::toString).containsExactly(
+                "{\"operation-0\":{\"entity\":\"product\",\"action\":\"upsert\",\"payload\":[{\"id\":\"1\"},{\"id\":\"2\"}]},"
+                        + "\"operation-1\":{\"entity\":\"product\",\"action\":\"delete\",\"payload\":[{\"id\":\"3\"}]}}",
+                "{\"operation-0\":{\"entity\":\"category\",\"action\":\"upsert\",\"payload\":[{\"id\":\"4\"}]}}");
+    }
+
+    @Test
+    public void chunksAreLimitedBySize() {
+        answerSyncs(() -> success());
+        String description = "x".repeat(1000);
+
+        try (var batcher = createBatcher().maxBytesPerChunk(2500).parallelism(1)) {
+            for (int i = 0; i < 5; i++) {
+                batcher.upsert("product", Map.of("description", description));
+            }
+            assertThat(batcher.complete().chunks()).isEqualTo(3);
+        }
+
+        assertThat(sentChunks).map(chunk -> chunk.at("/operation-0/payload").size()).containsExactly(2, 2, 1);
+    }
+
+    @Test
+    public void incompleteChunkIsSentAfterTheFlushInterval() {
+        answerSyncs(() -> success());
+
+        try (var batcher = createBatcher().flushInterval(Duration.ofMillis(50))) {
+            batcher.upsert("product", Map.of("id", "1"));
+
+            verify(adminApi, timeout(5000)).sync(eq(app), eq(SHOP_ID), any());
+            assertThat(batcher.complete().chunks()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void zeroFlushIntervalDisablesTheTimedFlush() throws InterruptedException {
+        answerSyncs(() -> success());
+
+        try (var batcher = new SyncBatcher(adminApi, app, SHOP_ID, OBJECT_MAPPER, Runnable::run)
+                .parallelism(1)
+                .flushInterval(Duration.ZERO)) {
+            batcher.upsert("product", Map.of("id", "1"));
+
+            Thread.sleep(100);
+            verify(adminApi, never()).sync(eq(app), eq(SHOP_ID), any());
+            assertThat(batcher.complete().chunks()).isEqualTo(1);
+        }
+        verify(adminApi).sync(eq(app), eq(SHOP_ID), any());
+    }
+
+    @Test
+    public void failedChunksAreReportedWithoutStoppingTheBatcher() {
+        var calls = new AtomicInteger();
+        answerSyncs(() -> {
+            if (calls.incrementAndGet() == 1) {
+                throw HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "Bad Request", HttpHeaders.EMPTY,
+                        null, null);
+            }
+            return success();
+        });
+
+        SyncBatcher.Result result;
+        try (var batcher = createBatcher().maxOperationsPerChunk(2).parallelism(1)) {
+            for (int i = 0; i < 5; i++) {
+                batcher.deleteById("product", String.valueOf(i));
+            }
+            result = batcher.complete();
+        }
+
+        assertThat(result.chunks()).isEqualTo(3);
+        assertThat(result.operations()).isEqualTo(5);
+        assertThat(result.failedOperations()).isEqualTo(2);
+        assertThat(result.failedChunks()).singleElement().satisfies(failedChunk -> {
+            assertThat(failedChunk.chunkNumber()).isEqualTo(1);
+            assertThat(failedChunk.exception()).isInstanceOf(HttpClientErrorException.BadRequest.class);
+        });
+    }
+
+    @Test
+    public void chunksInFlightAreLimited() {
+        var inFlight = new AtomicInteger();
+        var maxInFlight = new AtomicInteger();
+        answerSyncs(() -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return success();
+        });
+
+        try (var batcher = createBatcher().maxOperationsPerChunk(1).parallelism(2)) {
+            for (int i = 0; i < 10; i++) {
+                batcher.deleteById("product", String.valueOf(i));
+            }
+            assertThat(batcher.complete().successful()).isTrue();
+        }
+
+        assertThat(sentChunks).hasSize(10);
+        assertThat(maxInFlight).hasValueBetween(1, 2);
+    }
+
+    private SyncBatcher createBatcher() {
+        return new SyncBatcher(adminApi, app, SHOP_ID, OBJECT_MAPPER, executor);
+    }
+
+    private interface SyncAnswer {
+        SyncResult answer() throws Exception;
+    }
+
+    private void answerSyncs(SyncAnswer answer) {
+        when(adminApi.sync(eq(app), eq(SHOP_ID), any())).thenAnswer(invocation -> {
+            sentChunks.add(OBJECT_MAPPER.readTree(OBJECT_MAPPER.writeValueAsString(invocation.getArgument(2))));
+            return answer.answer();
+        });
+    }
+
+    private static SyncResult success() {
+        return OBJECT_MAPPER.convertValue(Map.of("success", true), SyncResult.class);
+    }
+}
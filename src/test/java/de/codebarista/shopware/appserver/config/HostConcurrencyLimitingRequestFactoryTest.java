@@ -0,0 +1,55 @@
+package de.codebarista.shopware.appserver.config;
+
+import de.codebarista.shopware.appserver.exception.ConcurrencyLimitExceededException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class HostConcurrencyLimitingRequestFactoryTest {
+    private final HostConcurrencyLimitingRequestFactory requestFactory = new HostConcurrencyLimitingRequestFactory(
+            (uri, method) -> {
+                var request = new MockClientHttpRequest(method, uri);
+                request.setResponse(new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+                return request;
+            }, 1, Duration.ofMillis(50));
+
+    @Test
+    public void requestWaitsForTheResponseOfTheSameHostToBeClosed() throws IOException {
+        ClientHttpResponse response = execute("https://shop-a.test/api/search/product");
+
+        assertThatThrownBy(() -> execute("https://shop-a.test/api/_action/sync"))
+                .isInstanceOf(ConcurrencyLimitExceededException.class);
+
+        response.close();
+        // Closing twice must not release a second permit
+        response.close();
+        try (var nextResponse = execute("https://shop-a.test/api/_action/sync")) {
+            assertThat(nextResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThatThrownBy(() -> execute("https://shop-a.test/api/_action/sync"))
+                    .isInstanceOf(ConcurrencyLimitExceededException.class);
+        }
+    }
+
+    @Test
+    public void otherHostsAreNotLimited() throws IOException {
+        try (var response = execute("https://shop-a.test/api/search/product");
+             var otherResponse = execute("https://shop-b.test/api/search/product")) {
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(otherResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+        }
+    }
+
+    private ClientHttpResponse execute(String url) throws IOException {
+        return requestFactory.createRequest(URI.create(url), HttpMethod.POST).execute();
+    }
+}
@@ -0,0 +1,64 @@
+package de.codebarista.shopware.appserver.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReusableRequestWrapperTest {
+
+    @Test
+    public void bodyCanBeReadRepeatedlyFromTheSameBuffer() throws IOException {
+        byte[] content = "{\"source\":{\"shopId\":\"abc\"}}".getBytes(StandardCharsets.UTF_8);
+        var request = new MockHttpServletRequest("POST", "/shopware/api/v1/event");
+        request.setContent(content);
+
+        var wrapper = new ReusableRequestWrapper(request);
+
+        assertThat(wrapper.getBody()).isEqualTo(content);
+        assertThat(wrapper.getBody()).isSameAs(wrapper.getBody());
+        assertThat(wrapper.getInputStream().readAllBytes()).isEqualTo(content);
+        assertThat(wrapper.getInputStream().readAllBytes()).isEqualTo(content);
+        assertThat(wrapper.getReader().readLine()).isEqualTo("{\"source\":{\"shopId\":\"abc\"}}");
+    }
+
+    @Test
+    public void bodyWithoutContentLengthIsCaptured() throws IOException {
+        byte[] content = "x".repeat(10_000).getBytes(StandardCharsets.UTF_8);
+        var request = new MockHttpServletRequest("POST", "/shopware/api/v1/event") {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        request.setContent(content);
+
+        assertThat(new ReusableRequestWrapper(request).getBody()).isEqualTo(content);
+    }
+
+    @Test
+    public void bodyShorterThanDeclaredContentLengthIsTruncated() throws IOException {
+        byte[] content = "short".getBytes(StandardCharsets.UTF_8);
+        var request = new MockHttpServletRequest("POST", "/shopware/api/v1/event") {
+            @Override
+            public long getContentLengthLong() {
+                return 100;
+            }
+        };
+        request.setContent(content);
+
+        assertThat(new ReusableRequestWrapper(request).getBody()).isEqualTo(content);
+    }
+
+    @Test
+    public void readerUsesRequestCharacterEncoding() throws IOException {
+        var request = new MockHttpServletRequest("POST", "/shopware/api/v1/event");
+        request.setCharacterEncoding("ISO-8859-1");
+        request.setContent("Grüße".getBytes(StandardCharsets.ISO_8859_1));
+
+        assertThat(new ReusableRequestWrapper(request).getReader().readLine()).isEqualTo("Grüße");
+    }
+}
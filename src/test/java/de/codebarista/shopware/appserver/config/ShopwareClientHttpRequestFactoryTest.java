@@ -0,0 +1,194 @@
+package de.codebarista.shopware.appserver.config;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ShopwareClientHttpRequestFactoryTest {
+    private static final ParameterizedTypeReference<Map<String, Object>> JSON_OBJECT = new ParameterizedTypeReference<>() {
+    };
+
+    private final Map<String, String> receivedRequest = new ConcurrentHashMap<>();
+    private final CountDownLatch releaseStalledResponse = new CountDownLatch(1);
+    private HttpServer server;
+    private ShopwareClientHttpRequestFactory requestFactory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/_action/sync", exchange -> {
+            receivedRequest.put("body", new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            receivedRequest.put("contentLength", String.valueOf(exchange.getRequestHeaders().getFirst("Content-Length")));
+            receivedRequest.put("transferEncoding",
+                    String.valueOf(exchange.getRequestHeaders().getFirst("Transfer-Encoding")));
+            byte[] response = "{\"success\":true}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", MediaType.APPLICATION_JSON_VALUE);
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.createContext("/api/search/product", exchange -> {
+            byte[] requestBody = exchange.getRequestBody().readAllBytes();
+            if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                requestBody = new GZIPInputStream(new ByteArrayInputStream(requestBody)).readAllBytes();
+            }
+            receivedRequest.put("body", new String(requestBody, StandardCharsets.UTF_8));
+            receivedRequest.put("acceptEncoding",
+                    String.valueOf(exchange.getRequestHeaders().getFirst("Accept-Encoding")));
+            var compressedResponse = new ByteArrayOutputStream();
+            try (var gzip = new GZIPOutputStream(compressedResponse)) {
+                gzip.write("{\"total\":1}".getBytes(StandardCharsets.UTF_8));
+            }
+            exchange.getResponseHeaders().add("Content-Type", MediaType.APPLICATION_JSON_VALUE);
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, compressedResponse.size());
+            exchange.getResponseBody().write(compressedResponse.toByteArray());
+            exchange.close();
+        });
+        server.createContext("/api/search/stalled", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", MediaType.APPLICATION_JSON_VALUE);
+            exchange.sendResponseHeaders(200, 1000);
+            exchange.getResponseBody().write("{\"data\":[".getBytes(StandardCharsets.UTF_8));
+            exchange.getResponseBody().flush();
+            try {
+                releaseStalledResponse.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.createContext("/api/search/trickling", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", MediaType.APPLICATION_JSON_VALUE);
+            exchange.sendResponseHeaders(200, 10);
+            try {
+                for (int i = 0; i < 10; i++) {
+                    exchange.getResponseBody().write('x');
+                    exchange.getResponseBody().flush();
+                    Thread.sleep(100);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        requestFactory = new ShopwareClientHttpRequestFactory(HttpClient.newHttpClient(), Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        releaseStalledResponse.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    public void requestIsSentWithContentLengthAndResponseIsStreamed() throws IOException {
+        String body = "{\"product\":\"" + "x".repeat(100_000) + "\"}";
+        var request = requestFactory.createRequest(url(), HttpMethod.POST);
+        request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        request.getBody().write(body.getBytes(StandardCharsets.UTF_8));
+
+        try (var response = request.execute()) {
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+            assertThat(StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8))
+                    .isEqualTo("{\"success\":true}");
+        }
+        assertThat(receivedRequest)
+                .containsEntry("body", body)
+                .containsEntry("contentLength", String.valueOf(body.length()))
+                .containsEntry("transferEncoding", "null");
+    }
+
+    @Test
+    public void responseIsDeserializedByRestTemplate() {
+        var restTemplate = new RestTemplate(requestFactory);
+
+        Map<String, Object> response = restTemplate.exchange(url(), HttpMethod.POST,
+                new HttpEntity<>(Map.of("entity", "product")), JSON_OBJECT).getBody();
+
+        assertThat(response).containsEntry("success", true);
+        assertThat(receivedRequest).containsEntry("body", "{\"entity\":\"product\"}");
+    }
+
+    @Test
+    public void requestsAndResponsesAreCompressed() {
+        var restTemplate = new RestTemplate(
+                new ShopwareClientHttpRequestFactory(HttpClient.newHttpClient(), Duration.ofSeconds(5), true));
+        String body = "x".repeat(ShopwareClientHttpRequestFactory.MIN_COMPRESSED_BODY_SIZE);
+        var headers = new HttpHeaders();
+        headers.add(HttpHeaders.CONTENT_ENCODING, "gzip");
+
+        Map<String, Object> response = restTemplate.exchange(url("/api/search/product"), HttpMethod.POST,
+                new HttpEntity<>(Map.of("term", body), headers), JSON_OBJECT).getBody();
+
+        assertThat(response).containsEntry("total", 1);
+        assertThat(receivedRequest)
+                .containsEntry("body", "{\"term\":\"" + body + "\"}")
+                .containsEntry("acceptEncoding", "gzip");
+    }
+
+    @Test
+    public void stalledResponseBodyFailsAfterTheReadTimeout() throws IOException {
+        var factory = new ShopwareClientHttpRequestFactory(HttpClient.newHttpClient(), Duration.ofMillis(500));
+        var request = factory.createRequest(url("/api/search/stalled"), HttpMethod.POST);
+        long start = System.nanoTime();
+
+        try (var response = request.execute()) {
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThatThrownBy(() -> response.getBody().readAllBytes()).isInstanceOf(HttpTimeoutException.class);
+        }
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(10));
+    }
+
+    @Test
+    public void responseBodyThatKeepsArrivingIsReadBeyondTheReadTimeout() throws IOException {
+        var factory = new ShopwareClientHttpRequestFactory(HttpClient.newHttpClient(), Duration.ofMillis(500));
+        var request = factory.createRequest(url("/api/search/trickling"), HttpMethod.POST);
+
+        try (var response = request.execute()) {
+            assertThat(response.getBody().readAllBytes()).hasSize(10);
+        }
+    }
+
+    private URI url() {
+        return url("/api/_action/sync");
+    }
+
+    private URI url(String path) {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+    }
+}
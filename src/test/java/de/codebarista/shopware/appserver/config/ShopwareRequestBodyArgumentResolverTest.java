@@ -0,0 +1,64 @@
+package de.codebarista.shopware.appserver.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.codebarista.shopware.appserver.api.dto.registration.ShopwareAppConfirmationDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ShopwareRequestBodyArgumentResolverTest {
+    private final ShopwareRequestBodyArgumentResolver resolver = new ShopwareRequestBodyArgumentResolver(new ObjectMapper());
+
+    @SuppressWarnings("unused")
+    void handler(@ShopwareRequestBody ShopwareAppConfirmationDto confirmation, ShopwareAppConfirmationDto plain) {
+    }
+
+    @Test
+    public void supportsOnlyAnnotatedParameters() throws NoSuchMethodException {
+        assertThat(resolver.supportsParameter(parameter(0))).isTrue();
+        assertThat(resolver.supportsParameter(parameter(1))).isFalse();
+    }
+
+    @Test
+    public void reusesBodyDecodedByFilter() throws Exception {
+        var request = new MockHttpServletRequest("POST", "/shopware/api/v1/registration/confirm");
+        var decoded = new ShopwareAppConfirmationDto("apiKey", "secretKey", "1", "https://myshop.de", "shop-1");
+        request.setAttribute(ShopwareSignatureVerificationFilter.DECODED_BODY_ATTRIBUTE, decoded);
+
+        Object resolved = resolver.resolveArgument(parameter(0), null, new ServletWebRequest(request), null);
+
+        assertThat(resolved).isSameAs(decoded);
+    }
+
+    @Test
+    public void readsBodyIfFilterDidNotDecodeIt() throws Exception {
+        var request = new MockHttpServletRequest("POST", "/shopware/api/v1/registration/confirm");
+        request.setContent("{\"shopId\":\"shop-1\",\"apiKey\":\"apiKey\"}".getBytes(StandardCharsets.UTF_8));
+
+        Object resolved = resolver.resolveArgument(parameter(0), null, new ServletWebRequest(request), null);
+
+        assertThat(resolved).isInstanceOf(ShopwareAppConfirmationDto.class);
+        assertThat(((ShopwareAppConfirmationDto) resolved).getShopId()).isEqualTo("shop-1");
+    }
+
+    @Test
+    public void malformedBodyIsNotReadable() {
+        var request = new MockHttpServletRequest("POST", "/shopware/api/v1/registration/confirm");
+        request.setContent("not-json".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> resolver.resolveArgument(parameter(0), null, new ServletWebRequest(request), null))
+                .isInstanceOf(HttpMessageNotReadableException.class);
+    }
+
+    private MethodParameter parameter(int index) throws NoSuchMethodException {
+        var method = getClass().getDeclaredMethod("handler", ShopwareAppConfirmationDto.class, ShopwareAppConfirmationDto.class);
+        return new MethodParameter(method, index);
+    }
+}
@@ -59,6 +59,11 @@ public class AdminApiStub implements AdminApi {
         throw new RuntimeException("Method 'sync' not implemented in stub");
     }
 
+    @Override
+    public void triggerIndexing(ShopwareApp app, String shopId) {
+        throw new RuntimeException("Method 'triggerIndexing' not implemented in stub");
+    }
+
     @Override
     public UriComponentsBuilder getShopUrlBuilder(ShopwareApp app, String shopId) {
         throw new RuntimeException("Method 'getShopUrlBuilder' not implemented in stub");
@@ -1,6 +1,9 @@
 package de.codebarista.shopware.testutils;
 
+import de.codebarista.shopware.appserver.model.ShopwareAccessTokenEntityRepository;
+import de.codebarista.shopware.appserver.model.ShopwareShopChangeEntityRepository;
 import de.codebarista.shopware.appserver.model.ShopwareShopEntityRepository;
+import de.codebarista.shopware.appserver.service.ShopManagementService;
 import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
 import org.junit.jupiter.api.extension.BeforeAllCallback;
 import org.junit.jupiter.api.extension.ExtensionContext;
@@ -25,6 +28,9 @@ public class CleanDatabaseExtension implements BeforeAllCallback, AfterTestExecu
     private void cleanDataBase(ExtensionContext context) {
         ApplicationContext appContext = SpringExtension.getApplicationContext(context);
         appContext.getBean(ShopwareShopEntityRepository.class).deleteAll();
+        appContext.getBean(ShopwareShopChangeEntityRepository.class).deleteAll();
+        appContext.getBean(ShopwareAccessTokenEntityRepository.class).deleteAll();
+        appContext.getBean(ShopManagementService.class).invalidateShopCache();
     }
 
 }